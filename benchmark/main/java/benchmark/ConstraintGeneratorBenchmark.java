@@ -0,0 +1,75 @@
+package main.java.benchmark;
+
+import main.java.game.MineSweeper;
+import main.java.solvers.FrontierComponent;
+import main.java.solvers.SolverUtil;
+import main.java.solvers.constraints.IPBConstraintGenerator;
+import main.java.solvers.constraints.PBConstraintGeneratorBoard;
+import main.java.solvers.constraints.PBConstraintGeneratorComponent;
+import main.java.solvers.constraints.PBConstraintGeneratorOpenCells;
+import main.java.solvers.constraints.PBConstraintGeneratorSea;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sat4j.pb.SolverFactory;
+import org.sat4j.pb.core.PBSolver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link IPBConstraintGenerator} encoding each position of the corpus
+ * into a fresh SAT4J solver, the cost of building an instance before solving.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintGeneratorBenchmark {
+
+    @Benchmark
+    public void board(CorpusState corpus, Blackhole blackhole) {
+        generate(corpus, new PBConstraintGeneratorBoard(), blackhole);
+    }
+
+    @Benchmark
+    public void openCells(CorpusState corpus, Blackhole blackhole) {
+        generate(corpus, new PBConstraintGeneratorOpenCells(), blackhole);
+    }
+
+    @Benchmark
+    public void sea(CorpusState corpus, Blackhole blackhole) {
+        generate(corpus, new PBConstraintGeneratorSea(), blackhole);
+    }
+
+    @Benchmark
+    public void component(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            for (FrontierComponent component : SolverUtil.getFrontierComponents(game.getCells(), game.getFrontier())) {
+                PBSolver solver = SolverFactory.newDefault();
+                new PBConstraintGeneratorComponent(component)
+                        .generate(solver, game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+                blackhole.consume(solver);
+                // need to make sure that solver will get garbage collected
+                // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+                solver.reset();
+            }
+        }
+    }
+
+    private void generate(CorpusState corpus, IPBConstraintGenerator generator, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            PBSolver solver = SolverFactory.newDefault();
+            generator.generate(solver, game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+            blackhole.consume(solver);
+            // need to make sure that solver will get garbage collected
+            // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+            solver.reset();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package main.java.benchmark;
+
+import main.java.game.Difficulty;
+import main.java.game.MineSweeper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * The positions every benchmark runs over, built once per trial. An operation
+ * of a benchmark is one pass over all of them.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    @Param({"BEGINNER", "INTERMEDIATE", "EXPERT"})
+    public Difficulty difficulty;
+
+    @Param({"20"})
+    public int size;
+
+    public List<MineSweeper> positions;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        positions = PositionCorpus.of(difficulty, size);
+    }
+}
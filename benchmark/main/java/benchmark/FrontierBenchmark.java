@@ -0,0 +1,69 @@
+package main.java.benchmark;
+
+import main.java.game.MineSweeper;
+import main.java.solvers.SolverUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The land, closed shore and sea classification of {@link SolverUtil}, scanning
+ * the board, read from the state of the board the game keeps and read from the
+ * frontier the game keeps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontierBenchmark {
+
+    @Benchmark
+    public void landCells(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            blackhole.consume(SolverUtil.getLandCells(game.getCells()));
+        }
+    }
+
+    @Benchmark
+    public void closedShoreCells(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            blackhole.consume(SolverUtil.getClosedShoreCells(game.getCells()));
+        }
+    }
+
+    @Benchmark
+    public void seaCells(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            blackhole.consume(SolverUtil.getSeaCells(game.getCells()));
+        }
+    }
+
+    @Benchmark
+    public void frontierComponents(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            blackhole.consume(SolverUtil.getFrontierComponents(game.getCells()));
+        }
+    }
+
+    @Benchmark
+    public void boardStateFrontierComponents(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            blackhole.consume(SolverUtil.getFrontierComponents(game.getCells(), game.getBoardState()));
+        }
+    }
+
+    @Benchmark
+    public void trackedFrontierComponents(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            blackhole.consume(SolverUtil.getFrontierComponents(game.getCells(), game.getFrontier()));
+        }
+    }
+}
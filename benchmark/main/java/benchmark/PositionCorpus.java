@@ -0,0 +1,73 @@
+package main.java.benchmark;
+
+import main.java.game.Cell;
+import main.java.game.CellState;
+import main.java.game.Difficulty;
+import main.java.game.GameState;
+import main.java.game.MineSweeper;
+import main.java.solvers.SolverUtil;
+import main.java.solvers.constant.BitboardMineSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+/**
+ * A fixed set of mid-game positions for the benchmarks. Game i is planted from
+ * seed i and played with the bitboard solver until a share of its safe cells,
+ * also picked from the seed, are open. When the solver knows no safe cell a
+ * closed cell is guessed with a generator seeded the same way. Games lost on a
+ * guess or won before then are skipped, so the same difficulty and size always
+ * give the same positions.
+ */
+public class PositionCorpus {
+
+    private static final double MIN_OPENED = 0.2;
+    private static final double MAX_OPENED = 0.7;
+
+    private PositionCorpus() {
+    }
+
+    public static List<MineSweeper> of(Difficulty diff, int size) {
+        List<MineSweeper> positions = new ArrayList<>(size);
+        for (long seed = 0; positions.size() < size; seed++) {
+            MineSweeper game = new MineSweeper(diff, seed);
+            double opened = MIN_OPENED + (MAX_OPENED - MIN_OPENED) * (seed % 11) / 10;
+            if (playToMidGame(game, opened, new SplittableRandom(seed))) {
+                positions.add(game);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * @return true if the game is still running with some cells open.
+     */
+    private static boolean playToMidGame(MineSweeper game, double opened, SplittableRandom random) {
+        int target = (int) ((game.getWidth() * game.getHeight() - game.getMines()) * opened);
+        game.openCell(game.getWidth() / 2, game.getHeight() / 2);
+        BitboardMineSolver solver = new BitboardMineSolver(game);
+        while (game.getState() == GameState.RUNNING && game.getOpenCells() < target) {
+            boolean change = false;
+            for (Map.Entry<Cell, Boolean> pair : solver.getKnownCells().entrySet()) {
+                Cell cell = pair.getKey();
+                if (!pair.getValue() && cell.getState() == CellState.CLOSED) {
+                    game.openCell(cell.getX(), cell.getY());
+                    change = true;
+                    if (game.getState() != GameState.RUNNING || game.getOpenCells() >= target) {
+                        break;
+                    }
+                }
+            }
+            if (!change) {
+                List<Cell> closed = SolverUtil.filterCellStatesToStream(game.getCells(), CellState.CLOSED)
+                        .collect(Collectors.toList());
+                Cell guess = closed.get(random.nextInt(closed.size()));
+                game.openCell(guess.getX(), guess.getY());
+            }
+        }
+        return game.getState() == GameState.RUNNING;
+    }
+}
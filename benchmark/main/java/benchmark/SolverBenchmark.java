@@ -0,0 +1,79 @@
+package main.java.benchmark;
+
+import main.java.game.CellState;
+import main.java.game.MineSweeper;
+import main.java.solvers.SolverUtil;
+import main.java.solvers.constant.BitboardMineSolver;
+import main.java.solvers.constant.PBMineSolver;
+import main.java.solvers.constant.SinglePointMineSolver;
+import main.java.solvers.probability.TrueProbabilityMineSolver;
+import main.java.solvers.strategic.LeastNeighboursSolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The solvers on every position of the corpus. A solver is made for each
+ * position inside the benchmark, as the game player and the gui do, so the
+ * PB solver never gets to reuse the encoding of an earlier call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+    @Benchmark
+    public void singlePoint(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            var solver = new SinglePointMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+            blackhole.consume(solver.getKnownCells());
+        }
+    }
+
+    @Benchmark
+    public void pseudoBoolean(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            var solver = new PBMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+            blackhole.consume(solver.getKnownCells());
+            // need to make sure that solver will get garbage collected
+            // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+            solver.reset();
+        }
+    }
+
+    @Benchmark
+    public void bitboard(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            var solver = new BitboardMineSolver(game);
+            blackhole.consume(solver.getKnownCells());
+        }
+    }
+
+    @Benchmark
+    public void trueProbability(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            var solver = new TrueProbabilityMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+            blackhole.consume(solver.getProbabilities());
+        }
+    }
+
+    @Benchmark
+    public void leastNeighbours(CorpusState corpus, Blackhole blackhole) {
+        for (MineSweeper game : corpus.positions) {
+            var solver = new LeastNeighboursSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+            var closedCells = SolverUtil.filterCellStatesToStream(game.getCells(), CellState.CLOSED)
+                    .collect(Collectors.toList());
+            blackhole.consume(solver.getBestMove(closedCells));
+        }
+    }
+}
@@ -11,13 +11,29 @@ public class Board {
     private final int mines;
     private final Cell[][] cells;
     private final MineField field;
+    private final BoardState state;
+    private final NeighbourIndex neighbourIndex;
 
     public Board(int width, int height, int mines) {
+        this(width, height, mines, new MineField(height, width, mines));
+    }
+
+    /**
+     * A board whose mines are planted from the given seed, the same seed always
+     * gives the same board.
+     */
+    public Board(int width, int height, int mines, long seed) {
+        this(width, height, mines, new MineField(height, width, mines, seed));
+    }
+
+    private Board(int width, int height, int mines, MineField field) {
         this.width = width;
         this.height = height;
         this.mines = mines;
-        this.field = new MineField(height, width, mines);
+        this.field = field;
         this.cells = createCells();
+        this.state = new BoardState(width, height);
+        this.neighbourIndex = NeighbourIndex.of(width, height);
     }
 
     public MineField getField() {
@@ -29,29 +45,47 @@ public class Board {
     }
 
     public List<Cell> getNeighbours(int x, int y) {
-        List<Cell> neighbours = new ArrayList<>();
-        for (int i = x - 1; i <= x + 1; i++) {
-            for (int j = y - 1; j <= y + 1; j++) {
-                if (i >= 0 && i < width && j >= 0 && j < height && !(i == x && j == y)) {
-                    neighbours.add(cells[i][j]);
-                }
-            }
+        int i = neighbourIndex.index(x, y);
+        List<Cell> neighbours = new ArrayList<>(neighbourIndex.getCount(i));
+        for (int k = neighbourIndex.start(i); k < neighbourIndex.end(i); k++) {
+            neighbours.add(neighbourIndex.getCell(cells, neighbourIndex.neighbour(i, k)));
         }
         return neighbours;
     }
 
+    public NeighbourIndex getNeighbourIndex() {
+        return this.neighbourIndex;
+    }
+
     public Cell[][] getCells() {
         return this.cells;
     }
 
+    /**
+     * @return the packed state of the board, kept in sync with the cells.
+     */
+    public BoardState getState() {
+        return this.state;
+    }
+
     public Cell unveil(int x, int y) {
         int num = field.uncover(x, y);
         Cell cell = getCell(x, y);
         cell.setNumber(num);
         cell.setState(CellState.OPEN);
+        state.setOpen(x, y, num);
         return cell;
     }
 
+    public void setFlagged(int x, int y, boolean isFlagged) {
+        Cell cell = getCell(x, y);
+        if (cell.getState() == CellState.OPEN) {
+            return;
+        }
+        cell.setState(isFlagged ? CellState.FLAGGED : CellState.CLOSED);
+        state.setFlagged(x, y, isFlagged);
+    }
+
     private Cell[][] createCells() {
         Cell[][] cells = new Cell[width][height];
         for (int i = 0; i < this.width; i++) {
@@ -62,8 +96,12 @@ public class Board {
         return cells;
     }
 
-    public void openAllCells(final String PASSWORD) throws NoSuchAlgorithmException {
+    /**
+     * @return the cells that were not open before.
+     */
+    public List<Cell> openAllCells(final String PASSWORD) throws NoSuchAlgorithmException {
         this.field.open(PASSWORD);
+        List<Cell> opened = new ArrayList<>();
         for (int i = 0; i < this.width; i++) {
             for (int j = 0; j < this.height; j++) {
                 Cell cell = this.cells[i][j];
@@ -71,9 +109,12 @@ public class Board {
                     int num = this.field.uncover(i, j);
                     cell.setNumber(num);
                     cell.setState(CellState.OPEN);
+                    state.setOpen(i, j, num);
+                    opened.add(cell);
                 }
             }
         }
+        return opened;
     }
 
 }
@@ -0,0 +1,53 @@
+package main.java.game;
+
+import java.util.List;
+
+/**
+ * Everything that changed on the board in a single call to the game: the cells
+ * that were opened (an opening can open many), the cells whose flag was set or
+ * cleared, and the state of the game before and after.
+ */
+public class BoardChangeEvent {
+
+    private final List<Cell> openedCells;
+    private final List<Cell> flagChangedCells;
+    private final GameState oldState;
+    private final GameState newState;
+
+    public BoardChangeEvent(List<Cell> openedCells, List<Cell> flagChangedCells, GameState oldState, GameState newState) {
+        this.openedCells = List.copyOf(openedCells);
+        this.flagChangedCells = List.copyOf(flagChangedCells);
+        this.oldState = oldState;
+        this.newState = newState;
+    }
+
+    /**
+     * @return the cells that were opened, in the order they were opened.
+     */
+    public List<Cell> getOpenedCells() {
+        return openedCells;
+    }
+
+    /**
+     * @return the cells that were flagged or unflagged, their current state
+     * tells which.
+     */
+    public List<Cell> getFlagChangedCells() {
+        return flagChangedCells;
+    }
+
+    public GameState getOldState() {
+        return oldState;
+    }
+
+    public GameState getNewState() {
+        return newState;
+    }
+
+    /**
+     * @return true if the game was won or lost by this change.
+     */
+    public boolean isGameStateChanged() {
+        return oldState != newState;
+    }
+}
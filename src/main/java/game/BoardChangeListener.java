@@ -0,0 +1,11 @@
+package main.java.game;
+
+public interface BoardChangeListener {
+    /**
+     * Called once for every call that changes the board, after the change has
+     * been made.
+     *
+     * @param event what changed.
+     */
+    void boardChanged(BoardChangeEvent event);
+}
@@ -0,0 +1,279 @@
+package main.java.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A compact copy of the state of a board. The open, flagged and closed cells
+ * are each kept in a bitset and the numbers of the open cells in a byte array.
+ * <p>
+ * Cells are packed column by column, cell (x, y) is bit x * height + y, which
+ * is the same order the cells of a Cell[][] are walked in. Moving a whole
+ * bitset one cell up or down the board is a shift by one, moving it one cell
+ * left or right is a shift by the height of the board.
+ */
+public class BoardState {
+
+    // the row masks only depend on the size, a new state of a size seen before reuses them
+    private static final Map<List<Integer>, long[][]> ROW_MASKS = new ConcurrentHashMap<>();
+
+    private final int width;
+    private final int height;
+    private final int size;
+    private final long[] open;
+    private final long[] flagged;
+    private final long[] closed;
+    private final byte[] numbers;
+    private final long[] notFirstRow;  // every cell but those with y == 0, shared by boards of the same size
+    private final long[] notLastRow;   // every cell but those with y == height - 1, shared by boards of the same size
+
+    /**
+     * Create the state of a board where every cell is closed.
+     */
+    public BoardState(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.size = width * height;
+        int words = (size + 63) / 64;
+        this.open = new long[words];
+        this.flagged = new long[words];
+        this.closed = new long[words];
+        this.numbers = new byte[size];
+        Arrays.fill(closed, -1L);
+        maskToSize(closed);
+        long[][] rows = ROW_MASKS.computeIfAbsent(List.of(width, height), key -> rowMasks(width, height));
+        this.notFirstRow = rows[0];
+        this.notLastRow = rows[1];
+    }
+
+    /**
+     * @return the cells but those in the first row and the cells but those in
+     * the last row, for a board of the given size.
+     */
+    private static long[][] rowMasks(int width, int height) {
+        int size = width * height;
+        int words = (size + 63) / 64;
+        long[] notFirstRow = new long[words];
+        long[] notLastRow = new long[words];
+        for (int i = 0; i < size; i++) {
+            if (i % height != 0) {
+                set(notFirstRow, i);
+            }
+            if (i % height != height - 1) {
+                set(notLastRow, i);
+            }
+        }
+        return new long[][]{notFirstRow, notLastRow};
+    }
+
+    /**
+     * @return the state of the given cells.
+     */
+    public static BoardState of(Cell[][] cells) {
+        final int width = cells.length;
+        final int height = cells[0].length;
+        BoardState state = new BoardState(width, height);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                Cell cell = cells[x][y];
+                if (cell.getState() == CellState.OPEN) {
+                    state.setOpen(x, y, cell.getNumber());
+                } else if (cell.getState() == CellState.FLAGGED) {
+                    state.setFlagged(x, y, true);
+                }
+            }
+        }
+        return state;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of cells on the board.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the bit of cell (x, y).
+     */
+    public int index(int x, int y) {
+        return x * height + y;
+    }
+
+    public void setOpen(int x, int y, int number) {
+        int i = index(x, y);
+        set(open, i);
+        clear(flagged, i);
+        clear(closed, i);
+        numbers[i] = (byte) number;
+    }
+
+    /**
+     * Flag or unflag a cell, open cells can not be flagged.
+     */
+    public void setFlagged(int x, int y, boolean isFlagged) {
+        int i = index(x, y);
+        if (isSet(open, i)) {
+            return;
+        }
+        if (isFlagged) {
+            set(flagged, i);
+            clear(closed, i);
+        } else {
+            clear(flagged, i);
+            set(closed, i);
+        }
+    }
+
+    public boolean isOpen(int x, int y) {
+        return isSet(open, index(x, y));
+    }
+
+    public boolean isFlagged(int x, int y) {
+        return isSet(flagged, index(x, y));
+    }
+
+    public boolean isClosed(int x, int y) {
+        return isSet(closed, index(x, y));
+    }
+
+    /**
+     * @return the number of an open cell, -1 for a mine.
+     */
+    public int getNumber(int x, int y) {
+        return numbers[index(x, y)];
+    }
+
+    /**
+     * @return the bitset of the open cells, it must not be modified.
+     */
+    public long[] getOpen() {
+        return open;
+    }
+
+    /**
+     * @return the bitset of the flagged cells, it must not be modified.
+     */
+    public long[] getFlagged() {
+        return flagged;
+    }
+
+    /**
+     * @return the bitset of the closed (not flagged) cells, it must not be
+     * modified.
+     */
+    public long[] getClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the bitset of the cells that are not open (closed or flagged).
+     */
+    public long[] getUnopened() {
+        long[] unopened = new long[open.length];
+        for (int i = 0; i < unopened.length; i++) {
+            unopened[i] = closed[i] | flagged[i];
+        }
+        return unopened;
+    }
+
+    /**
+     * @return the numbers of the cells, indexed the same way as the bitsets. It
+     * must not be modified.
+     */
+    public byte[] getNumbers() {
+        return numbers;
+    }
+
+    /**
+     * @return the given cells together with every cell touching one of them.
+     */
+    public long[] dilate(long[] cells) {
+        // up and down within a column, without wrapping into the next column
+        long[] column = cells.clone();
+        long[] notLast = new long[cells.length];
+        long[] notFirst = new long[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            notLast[i] = cells[i] & notLastRow[i];
+            notFirst[i] = cells[i] & notFirstRow[i];
+        }
+        or(column, shiftUp(notLast, 1));
+        or(column, shiftDown(notFirst, 1));
+
+        // left and right, a shift by a whole column
+        long[] result = column.clone();
+        or(result, shiftUp(column, height));
+        or(result, shiftDown(column, height));
+        maskToSize(result);
+        return result;
+    }
+
+    /**
+     * @return the bitset moved n bits towards the higher bits.
+     */
+    private static long[] shiftUp(long[] bits, int n) {
+        long[] shifted = new long[bits.length];
+        int words = n >>> 6;
+        int offset = n & 63;
+        for (int i = bits.length - 1; i >= words; i--) {
+            long word = bits[i - words] << offset;
+            if (offset != 0 && i - words - 1 >= 0) {
+                word |= bits[i - words - 1] >>> (64 - offset);
+            }
+            shifted[i] = word;
+        }
+        return shifted;
+    }
+
+    /**
+     * @return the bitset moved n bits towards the lower bits.
+     */
+    private static long[] shiftDown(long[] bits, int n) {
+        long[] shifted = new long[bits.length];
+        int words = n >>> 6;
+        int offset = n & 63;
+        for (int i = 0; i + words < bits.length; i++) {
+            long word = bits[i + words] >>> offset;
+            if (offset != 0 && i + words + 1 < bits.length) {
+                word |= bits[i + words + 1] << (64 - offset);
+            }
+            shifted[i] = word;
+        }
+        return shifted;
+    }
+
+    private static void or(long[] bits, long[] other) {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other[i];
+        }
+    }
+
+    private void maskToSize(long[] bits) {
+        int used = size & 63;
+        if (used != 0) {
+            bits[bits.length - 1] &= (1L << used) - 1;
+        }
+    }
+
+    public static boolean isSet(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+}
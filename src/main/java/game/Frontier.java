@@ -0,0 +1,154 @@
+package main.java.game;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The land, closed shore and sea cells of a board, kept up to date as cells are
+ * opened so they never have to be found by scanning the board.
+ * <p>
+ * Every cell keeps a count of its open neighbours. Opening a cell only touches
+ * the cell and its neighbours: the cell becomes land, and every closed
+ * neighbour that had no open neighbour before moves from the sea to the shore.
+ * Membership is a single bit test and the sizes are kept as counters.
+ */
+public class Frontier {
+
+    private final Cell[][] cells;
+    private final NeighbourIndex index;
+    private final byte[] openNeighbours;  // openNeighbours[i], the open neighbours of cell i, at most 8
+    private final long[] land;
+    private final long[] shore;
+    private final long[] sea;
+    private int landSize;
+    private int shoreSize;
+    private int seaSize;
+
+    public Frontier(Cell[][] cells) {
+        this.cells = cells;
+        this.index = NeighbourIndex.of(cells);
+        int size = index.getWidth() * index.getHeight();
+        int words = (size + 63) / 64;
+        this.openNeighbours = new byte[size];
+        this.land = new long[words];
+        this.shore = new long[words];
+        this.sea = new long[words];
+        for (int i = 0; i < size; i++) {
+            set(sea, i);
+        }
+        this.seaSize = size;
+
+        for (int x = 0; x < index.getWidth(); x++) {
+            for (int y = 0; y < index.getHeight(); y++) {
+                if (cells[x][y].getState() == CellState.OPEN) {
+                    open(x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * Move a newly opened cell to the land, does nothing if it already is.
+     */
+    public void open(int x, int y) {
+        int i = index.index(x, y);
+        if (isSet(land, i)) {
+            return;
+        }
+        if (isSet(shore, i)) {
+            clear(shore, i);
+            shoreSize--;
+        } else {
+            clear(sea, i);
+            seaSize--;
+        }
+        set(land, i);
+        landSize++;
+
+        for (int k = index.start(i); k < index.end(i); k++) {
+            int n = index.neighbour(i, k);
+            if (openNeighbours[n]++ == 0 && isSet(sea, n)) {
+                clear(sea, n);
+                seaSize--;
+                set(shore, n);
+                shoreSize++;
+            }
+        }
+    }
+
+    public boolean isLand(int x, int y) {
+        return isSet(land, index.index(x, y));
+    }
+
+    public boolean isClosedShore(int x, int y) {
+        return isSet(shore, index.index(x, y));
+    }
+
+    public boolean isSea(int x, int y) {
+        return isSet(sea, index.index(x, y));
+    }
+
+    /**
+     * @return the number of open neighbours of cell (x, y).
+     */
+    public int getOpenNeighbours(int x, int y) {
+        return openNeighbours[index.index(x, y)];
+    }
+
+    public int getLandSize() {
+        return landSize;
+    }
+
+    public int getClosedShoreSize() {
+        return shoreSize;
+    }
+
+    public int getSeaSize() {
+        return seaSize;
+    }
+
+    /**
+     * @return the land cells, in board order.
+     */
+    public List<Cell> getLandCells() {
+        return toCells(land, landSize);
+    }
+
+    /**
+     * @return the closed shore cells, in board order.
+     */
+    public List<Cell> getClosedShoreCells() {
+        return toCells(shore, shoreSize);
+    }
+
+    /**
+     * @return the sea cells, in board order.
+     */
+    public List<Cell> getSeaCells() {
+        return toCells(sea, seaSize);
+    }
+
+    private List<Cell> toCells(long[] bits, int count) {
+        List<Cell> result = new ArrayList<>(count);
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                result.add(index.getCell(cells, (w << 6) + Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isSet(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+}
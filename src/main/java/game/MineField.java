@@ -2,7 +2,7 @@ package main.java.game;
 
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * A blackbox minefield implementation. Distributes mines randomly and uniformly
@@ -17,45 +17,74 @@ import java.util.Random;
  * @since 2014-08-17
  */
 public class MineField {
-    private final boolean[][] field;
+    private final long[] field;  // bit i * height + j is set if (i,j) is a mine
+    private final int width;
+    private final int height;
     private boolean exploded = false;
     private boolean opened = false;
 
-    // 0<height<100 is the height of the mine field
-    // 0<width<100 is the width of the mine field
+    // 0<height is the height of the mine field
+    // 0<width is the width of the mine field, height*width fits in an int
     // 0<=number_of_mines<=height*width is the number of mines
     // Constructs the mine field with the given dimensions and
     // plants the given number of mines
     public MineField(int height, int width, int number_of_mines) {
+        this(height, width, number_of_mines, new SplittableRandom());
+    }
+
+    // as above, but the same seed always plants the same mines, so a layout
+    // can be replayed without keeping the field
+    public MineField(int height, int width, int number_of_mines, long seed) {
+        this(height, width, number_of_mines, new SplittableRandom(seed));
+    }
+
+    // as above, planting with the given generator; a thread can split its own
+    // generator off another with SplittableRandom.split()
+    public MineField(int height, int width, int number_of_mines, SplittableRandom gen) {
         assert height > 0;
         assert width > 0;
         assert number_of_mines >= 0 && number_of_mines <= height * width;
 
-        // field's entries are initialised to false by default
-        field = new boolean[width][height];
+        // field's bits are initialised to 0 by default, a bit per square
+        // keeps large fields small
+        this.width = width;
+        this.height = height;
+        int size = height * width;
+        field = new long[(size + 63) / 64];
         // plant mines as follows:
-        // iterate through the squares of the minefield,
-        // and plant a mine in a particular square with the
-        // probability m/n, where m is the number of unplanted mines
-        // and n is the number of squares still to be considered
-        // (including the current one);
-        // the resulting distribution is close to uniform
-        Random gen = new Random(); // random number generator
-        int remaining_positions = height * width; // number of positions that have not been considered yet
-        for (int i = 0; i < width; ++i) {
-            for (int j = 0; j < height; ++j) {
-                if (gen.nextInt(remaining_positions) < number_of_mines) {
-                    field[i][j] = true;
-                    --number_of_mines;
-                }
-                --remaining_positions;
+        // pick a uniformly random set of squares with Floyd's algorithm, which
+        // takes one random number per square picked rather than one per square
+        // of the field; when most squares are mines the safe squares are
+        // picked instead and the field is inverted
+        // the resulting distribution is uniform
+        boolean invert = number_of_mines > size / 2;
+        int picks = invert ? size - number_of_mines : number_of_mines;
+        for (int n = size - picks; n < size; ++n) {
+            int bit = gen.nextInt(n + 1);
+            if ((field[bit >>> 6] & (1L << bit)) != 0) {
+                bit = n;
+            }
+            field[bit >>> 6] |= 1L << bit;
+        }
+        if (invert) {
+            for (int w = 0; w < field.length; ++w) {
+                field[w] = ~field[w];
+            }
+            if (size % 64 != 0) {
+                field[field.length - 1] &= (1L << size) - 1;
             }
         }
     }
 
     // checks if (i,j) is within the field
     private boolean is_good(int i, int j) {
-        return i >= 0 && i < field.length && j >= 0 && j < field[i].length;
+        return i >= 0 && i < width && j >= 0 && j < height;
+    }
+
+    // checks if there is a mine at (i,j), which must be within the field
+    private boolean is_mine(int i, int j) {
+        int bit = i * height + j;
+        return (field[bit >>> 6] & (1L << bit)) != 0;
     }
 
     // 0<=h<height and 0<=w<width are the coordinates;
@@ -73,18 +102,18 @@ public class MineField {
         }
 
         // check if exploded this time
-        if (field[w][h]) {
+        if (is_mine(w, h)) {
             exploded = true;
             return -1;
         }
 
         // count the number of mines around this cell;
-        // note that field[w][h] is false, so we can count it
-        assert !field[w][h];
+        // note that (w,h) is not a mine, so we can count it
+        assert !is_mine(w, h);
         int counter = 0;
         for (int i = w - 1; i <= w + 1; ++i) {
             for (int j = h - 1; j <= h + 1; ++j) {
-                if (is_good(i, j) && field[i][j])
+                if (is_good(i, j) && is_mine(i, j))
                     ++counter;
             }
         }
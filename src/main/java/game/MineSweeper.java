@@ -1,7 +1,10 @@
 package main.java.game;
 
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class MineSweeper {
 
@@ -11,6 +14,8 @@ public class MineSweeper {
     private final int height;
     private final int mines;
     private final Board board;
+    private final Frontier frontier;
+    private final List<BoardChangeListener> listeners;
     private int openCells;
     private GameState gameState;
 
@@ -18,13 +23,31 @@ public class MineSweeper {
         this(diff.width, diff.height, diff.mines);
     }
 
+    /**
+     * A game whose mines are planted from the given seed, the same seed always
+     * gives the same game.
+     */
+    public MineSweeper(Difficulty diff, long seed) {
+        this(diff.width, diff.height, diff.mines, seed);
+    }
+
     public MineSweeper(int width, int height, int mines) {
+        this(width, height, mines, new Board(width, height, mines));
+    }
+
+    public MineSweeper(int width, int height, int mines, long seed) {
+        this(width, height, mines, new Board(width, height, mines, seed));
+    }
+
+    private MineSweeper(int width, int height, int mines, Board board) {
         this.gameState = GameState.RUNNING;
         this.width = width;
         this.height = height;
         this.mines = mines;
         this.openCells = 0;
-        this.board = new Board(width, height, mines);
+        this.board = board;
+        this.frontier = new Frontier(board.getCells());
+        this.listeners = new CopyOnWriteArrayList<>();
     }
 
     public Cell[][] getCells() {
@@ -48,52 +71,142 @@ public class MineSweeper {
     }
 
     public void openCell(int x, int y) {
-        if (this.gameState == GameState.RUNNING) {
-            this.openCells += 1;
-            Cell cell = board.unveil(x, y);
-            switch (cell.getNumber()) {
-                case -1 -> {
-                    this.gameState = GameState.LOST;
-                    endGame();
+        GameState oldState = this.gameState;
+        List<Cell> opened = new ArrayList<>();
+        openCell(x, y, opened);
+        fireBoardChanged(new BoardChangeEvent(opened, List.of(), oldState, this.gameState));
+    }
+
+    /**
+     * Open a cell and, if it has no mines around it, every cell reachable
+     * through cells with no mines around them. The cascade keeps its own stack
+     * of cells to expand rather than recursing, so it can open a whole large
+     * board without running out of stack.
+     */
+    private void openCell(int x, int y, List<Cell> opened) {
+        if (openSingleCell(x, y, opened) != 0 || this.gameState != GameState.RUNNING) {
+            return;
+        }
+        NeighbourIndex index = board.getNeighbourIndex();
+        Cell[][] cells = board.getCells();
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = index.index(x, y);
+        while (size > 0 && this.gameState == GameState.RUNNING) {
+            int i = stack[--size];
+            for (int k = index.start(i); k < index.end(i); k++) {
+                Cell c = index.getCell(cells, index.neighbour(i, k));
+                if (c.getState() != CellState.CLOSED || this.gameState != GameState.RUNNING) {
+                    continue;
                 }
-                case 0 -> openNeighbours(x, y);
-                default -> {
-                    if (this.openCells == (this.width * this.height) - this.mines) {
-                        this.gameState = GameState.WON;
-                        endGame();
+                if (openSingleCell(c.getX(), c.getY(), opened) == 0) {
+                    if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, size * 2);
                     }
+                    stack[size++] = index.neighbour(i, k);
                 }
             }
-        } else {
-            board.unveil(x, y);
         }
     }
 
-    public GameState getState() {
-        return this.gameState;
+    /**
+     * Open a single cell and end the game if it was lost or won.
+     *
+     * @return the number of the opened cell.
+     */
+    private int openSingleCell(int x, int y, List<Cell> opened) {
+        boolean wasOpen = board.getCell(x, y).getState() == CellState.OPEN;
+        if (this.gameState != GameState.RUNNING) {
+            Cell cell = board.unveil(x, y);
+            frontier.open(x, y);
+            if (!wasOpen) {
+                opened.add(cell);
+            }
+            return cell.getNumber();
+        }
+        if (wasOpen) {
+            // opening an open cell again is not a move, it must not count towards a win
+            return board.getCell(x, y).getNumber();
+        }
+        this.openCells += 1;
+        Cell cell = board.unveil(x, y);
+        frontier.open(x, y);
+        if (!wasOpen) {
+            opened.add(cell);
+        }
+        if (cell.getNumber() == -1) {
+            this.gameState = GameState.LOST;
+            endGame(opened);
+        } else if (cell.getNumber() > 0 && this.openCells == (this.width * this.height) - this.mines) {
+            this.gameState = GameState.WON;
+            endGame(opened);
+        }
+        return cell.getNumber();
     }
 
-    private void openNeighbours(int x, int y) {
-        List<Cell> neighbours = board.getNeighbours(x, y);
-        for (Cell c : neighbours) {
-            if (c.getState() == CellState.CLOSED) {
-                openCell(c.getX(), c.getY());
-            }
+    public void setFlagged(int x, int y, boolean isFlagged) {
+        CellState oldState = board.getCell(x, y).getState();
+        board.setFlagged(x, y, isFlagged);
+        Cell cell = board.getCell(x, y);
+        if (cell.getState() != oldState) {
+            fireBoardChanged(new BoardChangeEvent(List.of(), List.of(cell), gameState, gameState));
         }
     }
 
+    public void addBoardChangeListener(BoardChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeBoardChangeListener(BoardChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fireBoardChanged(BoardChangeEvent event) {
+        for (BoardChangeListener listener : listeners) {
+            listener.boardChanged(event);
+        }
+    }
+
+    public GameState getState() {
+        return this.gameState;
+    }
+
     public Cell getCell(int x, int y) {
         return this.board.getCell(x, y);
     }
 
     public void endGame() {
+        List<Cell> opened = new ArrayList<>();
+        endGame(opened);
+        fireBoardChanged(new BoardChangeEvent(opened, List.of(), gameState, gameState));
+    }
+
+    private void endGame(List<Cell> opened) {
         try {
-            this.board.openAllCells(PASSWORD);
+            for (Cell cell : this.board.openAllCells(PASSWORD)) {
+                frontier.open(cell.getX(), cell.getY());
+                opened.add(cell);
+            }
         } catch (NoSuchAlgorithmException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * @return the land, closed shore and sea cells, updated as cells are opened.
+     */
+    public Frontier getFrontier() {
+        return this.frontier;
+    }
+
+    /**
+     * @return the packed state of the board, updated as cells are opened and
+     * flagged.
+     */
+    public BoardState getBoardState() {
+        return this.board.getState();
+    }
+
     public Board getBoard() {
         return this.board;
     }
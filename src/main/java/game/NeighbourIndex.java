@@ -0,0 +1,205 @@
+package main.java.game;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * The neighbours of every cell of a board with a given width and height, built
+ * once per size and shared.
+ * <p>
+ * Cells are numbered x * height + y, the same as {@link BoardState}. A cell is
+ * in one of a few classes depending on which edges of the board it is on, and
+ * all cells of a class have their neighbours at the same relative offsets. The
+ * offsets of every class are kept one after another in a flat array, so the
+ * index only needs a byte per cell however large the board is. The neighbours
+ * of cell i are walked with a plain loop and no bounds checks:
+ * <pre>
+ * for (int k = index.start(i); k &lt; index.end(i); k++) {
+ *     Cell neighbour = index.getCell(cells, index.neighbour(i, k));
+ * }
+ * </pre>
+ */
+public class NeighbourIndex {
+
+    private static final Map<Long, NeighbourIndex> INDEXES = new ConcurrentHashMap<>();
+
+    // position of a coordinate along its axis
+    private static final int FIRST = 0;
+    private static final int MIDDLE = 1;
+    private static final int LAST = 2;
+    private static final int ONLY = 3;   // the axis is a single cell long
+    private static final int POSITIONS = 4;
+
+    private final int width;
+    private final int height;
+    private final byte[] cellClass;      // cellClass[i], the class of cell i
+    private final int[] classStart;      // classStart[c], the position of the first offset of class c
+    private final int[] offsets;         // offsets[k], the relative offset of a neighbour
+
+    private NeighbourIndex(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.classStart = new int[POSITIONS * POSITIONS + 1];
+
+        // the neighbours are listed column by column, the same order as the cells
+        int[] flat = new int[POSITIONS * POSITIONS * 8];
+        int k = 0;
+        for (int xPosition = 0; xPosition < POSITIONS; xPosition++) {
+            for (int yPosition = 0; yPosition < POSITIONS; yPosition++) {
+                classStart[xPosition * POSITIONS + yPosition] = k;
+                for (int dx = -1; dx <= 1; dx++) {
+                    for (int dy = -1; dy <= 1; dy++) {
+                        if (!(dx == 0 && dy == 0) && fits(xPosition, dx) && fits(yPosition, dy)) {
+                            flat[k++] = dx * height + dy;
+                        }
+                    }
+                }
+            }
+        }
+        classStart[POSITIONS * POSITIONS] = k;
+        this.offsets = Arrays.copyOf(flat, k);
+
+        this.cellClass = new byte[width * height];
+        for (int x = 0; x < width; x++) {
+            int xPosition = position(x, width);
+            for (int y = 0; y < height; y++) {
+                cellClass[index(x, y)] = (byte) (xPosition * POSITIONS + position(y, height));
+            }
+        }
+    }
+
+    /**
+     * @return the index of a board with the given size.
+     */
+    public static NeighbourIndex of(int width, int height) {
+        long key = ((long) width << 32) | height;
+        return INDEXES.computeIfAbsent(key, k -> new NeighbourIndex(width, height));
+    }
+
+    /**
+     * @return the index of a board the size of the given cells.
+     */
+    public static NeighbourIndex of(Cell[][] cells) {
+        return of(cells.length, cells[0].length);
+    }
+
+    private static int position(int coordinate, int length) {
+        if (length == 1) {
+            return ONLY;
+        } else if (coordinate == 0) {
+            return FIRST;
+        } else if (coordinate == length - 1) {
+            return LAST;
+        }
+        return MIDDLE;
+    }
+
+    /**
+     * @return true if a step of delta from a coordinate in the given position
+     * stays on the board.
+     */
+    private static boolean fits(int position, int delta) {
+        return switch (position) {
+            case FIRST -> delta >= 0;
+            case LAST -> delta <= 0;
+            case ONLY -> delta == 0;
+            default -> true;
+        };
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of cell (x, y).
+     */
+    public int index(int x, int y) {
+        return x * height + y;
+    }
+
+    public int getX(int i) {
+        return i / height;
+    }
+
+    public int getY(int i) {
+        return i % height;
+    }
+
+    public Cell getCell(Cell[][] cells, int i) {
+        return cells[i / height][i % height];
+    }
+
+    /**
+     * @return the first position of the neighbour offsets of cell i.
+     */
+    public int start(int i) {
+        return classStart[cellClass[i]];
+    }
+
+    /**
+     * @return the position after the last neighbour offset of cell i.
+     */
+    public int end(int i) {
+        return classStart[cellClass[i] + 1];
+    }
+
+    /**
+     * @return the number of the neighbour of cell i at position k.
+     */
+    public int neighbour(int i, int k) {
+        return i + offsets[k];
+    }
+
+    /**
+     * @return the number of neighbours of cell i, 3 in a corner, 5 on an edge
+     * and 8 otherwise.
+     */
+    public int getCount(int i) {
+        return end(i) - start(i);
+    }
+
+    /**
+     * @return the relative offsets of the neighbours of every class of cell, it
+     * must not be modified.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * @return the number of neighbours of cell (x, y) in the given state.
+     */
+    public int countNeighbours(Cell[][] cells, int x, int y, CellState state) {
+        int i = index(x, y);
+        int count = 0;
+        for (int k = start(i); k < end(i); k++) {
+            if (getCell(cells, i + offsets[k]).getState() == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of neighbours of cell (x, y) that are not open (closed
+     * or flagged).
+     */
+    public int countUnopenedNeighbours(Cell[][] cells, int x, int y) {
+        int i = index(x, y);
+        return getCount(i) - countNeighbours(cells, x, y, CellState.OPEN);
+    }
+
+    public void forEachNeighbour(Cell[][] cells, int x, int y, Consumer<Cell> action) {
+        int i = index(x, y);
+        for (int k = start(i); k < end(i); k++) {
+            action.accept(getCell(cells, i + offsets[k]));
+        }
+    }
+}
@@ -1,11 +1,11 @@
 package main.java.gui;
 
+import main.java.game.BoardChangeEvent;
 import main.java.game.Cell;
 import main.java.game.CellState;
 import main.java.game.GameState;
 import main.java.game.MineSweeper;
-import main.java.solvers.probability.TrueProbabilityMineSolver;
-import org.apache.commons.math3.fraction.BigFraction;
+import main.java.solvers.probability.AdaptiveProbabilityMineSolver;
 
 import javax.swing.*;
 import javax.swing.plaf.metal.MetalButtonUI;
@@ -14,8 +14,6 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.List;
 import java.util.*;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 public class BoardPanel extends JPanel {
 
@@ -46,6 +44,7 @@ public class BoardPanel extends JPanel {
         this.unsetCellHints = new ArrayList<>();
         this.setLayout(new GridLayout(game.getHeight(), game.getWidth()));
         setupGrid();
+        game.addBoardChangeListener(this::openChangedCells);
     }
 
     private void setupGrid() {
@@ -83,7 +82,7 @@ public class BoardPanel extends JPanel {
                 button.setEnabled(false);
             });
             if (showProbabilities) {
-                showHeatMap(new TrueProbabilityMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines()).getProbabilities());
+                showHeatMap(calculateProbabilities());
             }
         }
     }
@@ -102,9 +101,8 @@ public class BoardPanel extends JPanel {
     public void selectButton(CellButton button, Cell cell) {
         resetHints();
         game.openCell(cell.getX(), cell.getY());
-        int num = cell.getNumber();
-        openCellButton(button, num);
         if (game.getState() != GameState.RUNNING) {
+            openCellButton(button, cell.getNumber());
             endGame();
             if (game.getState() == GameState.LOST) {
                 button.setUI(new MetalButtonUI() {
@@ -113,27 +111,24 @@ public class BoardPanel extends JPanel {
                     }
                 });
             }
-        } else if (num == 0) {  // if an opening was made, collect opening cells and update them
-            clearOpening(cell);
         }
         // Todo: could speed up visualisation if all 0% cells were selected first
         //  before redoing heatmap
         if (showProbabilities && game.getState() == GameState.RUNNING) {
-            showHeatMap(new TrueProbabilityMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines()).getProbabilities());
+            showHeatMap(calculateProbabilities());
         }
     }
 
     public void flagButton(CellButton button, Cell cell) {
         int newMinesLeft = gameStats.getMinesLeft();
         var displayState = button.getDisplayState() == DisplayState.FLAG ? DisplayState.CLOSED : DisplayState.FLAG;
-        var cellState = button.getDisplayState() == DisplayState.FLAG ? CellState.CLOSED : CellState.FLAGGED;
         if (displayState == DisplayState.FLAG) {
             newMinesLeft -= 1;
         } else {
             newMinesLeft += 1;
         }
         gameStats.setMinesLeft(newMinesLeft);
-        cell.setState(cellState);
+        game.setFlagged(cell.getX(), cell.getY(), displayState == DisplayState.FLAG);
         button.setDisplayState(displayState);
         button.setEnabled(displayState == DisplayState.CLOSED);
     }
@@ -160,34 +155,16 @@ public class BoardPanel extends JPanel {
         button.setEnabled(false);
     }
 
-    private void clearOpening(Cell origin) {
-        Set<Cell> checkedCells = new HashSet<>();
-        checkedCells.add(origin);
-
-        Predicate<Cell> openPredicate = cell -> cell.getState() == CellState.OPEN;
-
-        var neighbours = game.getBoard().getNeighbours(origin.getX(), origin.getY()).stream()
-                .filter(openPredicate)
-                .collect(Collectors.toList());
-
-        while (!neighbours.isEmpty()) {
-            List<Cell> openNeighbours = new ArrayList<>();
-            for (Cell cell : neighbours) {
-                if (checkedCells.contains(cell)) {
-                    continue;
-                }
-                int num = cell.getNumber();
-                CellButton button = cellAndBtnMapping.get(cell);
-                openCellButton(button, num);
-                checkedCells.add(cell);
-                if (num == 0) {
-                    openNeighbours.addAll(game.getBoard().getNeighbours(cell.getX(), cell.getY()));
-                }
-            }
-            neighbours.clear();
-            neighbours = openNeighbours.stream()
-                    .filter(openPredicate)
-                    .collect(Collectors.toList());
+    /**
+     * Open the buttons of the cells opened by a move, a lost or won game opens
+     * every button in {@link #endGame()} instead.
+     */
+    private void openChangedCells(BoardChangeEvent event) {
+        if (event.getNewState() != GameState.RUNNING) {
+            return;
+        }
+        for (Cell cell : event.getOpenedCells()) {
+            openCellButton(cellAndBtnMapping.get(cell), cell.getNumber());
         }
     }
 
@@ -261,9 +238,7 @@ public class BoardPanel extends JPanel {
     public void setShowProbabilities(boolean showProbabilities) {
         this.showProbabilities = showProbabilities;
         if (showProbabilities) {
-            var solver = new TrueProbabilityMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
-            var probs = solver.getProbabilities();
-            showHeatMap(probs);
+            showHeatMap(calculateProbabilities());
         } else {
             normaliseAllCellButtons();
         }
@@ -283,15 +258,26 @@ public class BoardPanel extends JPanel {
         }
     }
 
-    public void showHeatMap(Map<Cell, BigFraction> probs) {
+    /**
+     * The heat map only needs approximate values, so the probabilities are
+     * worked out in floating-point arithmetic, and estimated when they can not
+     * be counted within the time budget.
+     */
+    private Map<Cell, Double> calculateProbabilities() {
+        var solver = new AdaptiveProbabilityMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+        solver.setFrontier(game.getFrontier());
+        return solver.getApproximateProbabilities();
+    }
+
+    public void showHeatMap(Map<Cell, Double> probs) {
         if (probs.isEmpty()) {
             return;
         }
-        var bestProb = BigFraction.ONE;
+        double bestProb = 1;
         for (var pair : probs.entrySet()) {
             Cell cell = pair.getKey();
-            BigFraction prob = pair.getValue();
-            int probCompare = prob.compareTo(bestProb);
+            double prob = pair.getValue();
+            int probCompare = Double.compare(prob, bestProb);
             if (probCompare < 0) {
                 bestProb = prob;
                 bestProbCells.clear();
@@ -301,24 +287,24 @@ public class BoardPanel extends JPanel {
             }
             setCellHeat(cellAndBtnMapping.get(cell), prob);
         }
-        if (bestProb.compareTo(BigFraction.ZERO) == 0) {
+        if (bestProb == 0) {
             return;
         }
         bestProbCells.forEach(cell -> cellAndBtnMapping.get(cell).setBackground(BEST_CELL_COLOUR));
     }
 
-    private void setCellHeat(CellButton button, BigFraction intensity) {
+    private void setCellHeat(CellButton button, double intensity) {
         Color colour = Color.CYAN;  // colour for 0% mine
-        if (intensity.compareTo(BigFraction.ZERO) > 0) {
+        if (intensity > 0) {
             for (int i = 0; i < HEAT_MAP_COLOURS.length; i++) {
                 colour = HEAT_MAP_COLOURS[i];
-                if (intensity.compareTo(new BigFraction(i, HEAT_MAP_COLOURS.length)) <= 0) {
+                if (intensity <= (double) i / HEAT_MAP_COLOURS.length) {
                     break;
                 }
             }
         }
         button.setBackground(colour);
-        button.setToolTipText("" + intensity.percentageValue() + "%");
+        button.setToolTipText("" + intensity * 100 + "%");
     }
 
 }
\ No newline at end of file
@@ -1,9 +1,10 @@
 package main.java.gui;
 
 import main.java.game.MineSweeper;
+import main.java.solvers.constant.BitboardMineSolver;
 import main.java.solvers.constant.IConstantMineSolver;
+import main.java.solvers.probability.AdaptiveProbabilityMineSolver;
 import main.java.solvers.probability.IProbabilityMineSolver;
-import main.java.solvers.probability.TrueProbabilityMineSolver;
 import main.java.solvers.strategic.IStrategicSolver;
 import main.java.solvers.constant.PBMineSolver;
 import main.java.solvers.constant.SinglePointMineSolver;
@@ -32,6 +33,7 @@ public class GameFrame extends JFrame {
     private MineSweeper game;
     private SolverSwingWorker worker;
     private BoardPanel boardPanel;
+    private PBMineSolver pbSolver;     // kept for the whole game, released when the game is replaced
 
     public GameFrame(MineSweeper game) {
         this.game = game;
@@ -55,10 +57,12 @@ public class GameFrame extends JFrame {
 
     public void setGame(MineSweeper newGame) {
         this.game = newGame;
+        resetPbSolver();
     }
 
     public void resetBoard() {
         this.game = new MineSweeper(game.getWidth(), game.getHeight(), game.getMines());
+        resetPbSolver();
         gameStats.reset(game.getMines());
         this.boardPanel = new BoardPanel(this.game, gameStats);
         this.boardPanel.setShowProbabilities(probabilityCheckBox.isSelected());
@@ -110,10 +114,9 @@ public class GameFrame extends JFrame {
     private void addButtonListeners() {
         hintBtn.addActionListener(e -> {
             if (!boardPanel.knowsHints()) {
-                // just use a pb solver rather than incremental solvers
-                IConstantMineSolver p = new PBMineSolver(game.getCells(), game.getWidth(),
-                        game.getHeight(), game.getMines());
-                boardPanel.setHintCells(p.getKnownCells());
+                // just use a pb solver rather than incremental solvers,
+                // it is kept for the whole game so it only encodes new cells
+                boardPanel.setHintCells(getPbSolver().getKnownCells());
             }
             boardPanel.showHint();
         });
@@ -149,6 +152,25 @@ public class GameFrame extends JFrame {
         probabilityCheckBox.addActionListener(e -> boardPanel.setShowProbabilities(probabilityCheckBox.isSelected()));
     }
 
+    /**
+     * @return the pb solver of the game, shared by the hint button and the
+     * solver workers, they never run at the same time as the buttons are
+     * disabled while a worker runs.
+     */
+    private PBMineSolver getPbSolver() {
+        if (pbSolver == null) {
+            pbSolver = new PBMineSolver(game);
+        }
+        return pbSolver;
+    }
+
+    private void resetPbSolver() {
+        if (pbSolver != null) {
+            pbSolver.reset();
+            pbSolver = null;
+        }
+    }
+
     private void configureSolverWorker(boolean loop) {
         List<IConstantMineSolver> constantSolvers = new ArrayList<>();
         Optional<IProbabilityMineSolver> probabilitySolver = Optional.empty();
@@ -156,7 +178,9 @@ public class GameFrame extends JFrame {
         loadConstantSolvers(constantSolvers);
 
         if (menuBar.getProbabilityCb().isSelected()) {
-            probabilitySolver = Optional.of(new TrueProbabilityMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines()));
+            var solver = new AdaptiveProbabilityMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+            solver.setFrontier(game.getFrontier());
+            probabilitySolver = Optional.of(solver);
         }
         if (menuBar.getStrategyCb().isSelected()) {
             strategicSolver = Optional.of(new LeastNeighboursSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines()));
@@ -170,7 +194,10 @@ public class GameFrame extends JFrame {
             constantSolvers.add(new SinglePointMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines()));
         }
         if (menuBar.getPseudoBooleanCb().isSelected()) {
-            constantSolvers.add(new PBMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines()));
+            constantSolvers.add(getPbSolver());
+        }
+        if (menuBar.getBitboardCb().isSelected()) {
+            constantSolvers.add(new BitboardMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines()));
         }
     }
 
@@ -15,6 +15,7 @@ public class GameMenuBar extends JMenuBar {
 
     private JCheckBoxMenuItem singlePointCb;
     private JCheckBoxMenuItem pseudoBooleanCb;
+    private JCheckBoxMenuItem bitboardCb;
     private JCheckBoxMenuItem probabilityCb;
     private JCheckBoxMenuItem strategyCb;
 
@@ -41,6 +42,8 @@ public class GameMenuBar extends JMenuBar {
         singlePointCb.setSelected(true);
         pseudoBooleanCb = new JCheckBoxMenuItem("Pseudo-Boolean");
         pseudoBooleanCb.setSelected(false);
+        bitboardCb = new JCheckBoxMenuItem("Bitboard Backtracking");
+        bitboardCb.setSelected(false);
         probabilityCb = new JCheckBoxMenuItem("Probability");
         probabilityCb.setSelected(false);
         strategyCb = new JCheckBoxMenuItem("Strategy");
@@ -61,6 +64,7 @@ public class GameMenuBar extends JMenuBar {
 
         menu.add(singlePointCb);
         menu.add(pseudoBooleanCb);
+        menu.add(bitboardCb);
         menu.add(probabilityCb);
         menu.add(strategyCb);
 
@@ -112,6 +116,10 @@ public class GameMenuBar extends JMenuBar {
         return pseudoBooleanCb;
     }
 
+    public JCheckBoxMenuItem getBitboardCb() {
+        return bitboardCb;
+    }
+
     public JCheckBoxMenuItem getProbabilityCb() {
         return probabilityCb;
     }
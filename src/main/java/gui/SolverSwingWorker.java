@@ -14,7 +14,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public class SolverSwingWorker extends SwingWorker<Boolean, Boolean> {
 
@@ -115,7 +114,7 @@ public class SolverSwingWorker extends SwingWorker<Boolean, Boolean> {
             }
             if (strategicSolver.isPresent()) {
                 if (cellsToChooseFrom.isEmpty()) {
-                    List<Cell> closedCells = SolverUtil.filterCellStatesToStream(game.getCells(), CellState.CLOSED).collect(Collectors.toList());
+                    List<Cell> closedCells = SolverUtil.maskToCells(game.getCells(), game.getBoardState().getClosed());
                     cellsToChooseFrom.addAll(closedCells);
                 }
                 Cell bestCell = strategicSolver.get().getBestMove(cellsToChooseFrom);
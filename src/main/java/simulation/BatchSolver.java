@@ -0,0 +1,274 @@
+package main.java.simulation;
+
+import main.java.game.Cell;
+import main.java.solvers.constant.IConstantMineSolver;
+import main.java.solvers.probability.IProbabilityMineSolver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Solves a stream of positions on a pool of threads and gives back a stream of
+ * the results, in the order of the positions.
+ * <p>
+ * A solver is bound to the cells it was built over, so every thread keeps a
+ * Cell[][] and a solver for each board size it has seen and copies the next
+ * position into those cells before calling the solver again. The SAT4J
+ * instances, generators and search arrays of a solver are reused from one
+ * position to the next, and a PBMineSolver keeps its solver while the
+ * positions follow on from each other, as they do in a recorded game. Only the
+ * most recently used sizes are kept per thread.
+ * <p>
+ * Results must not refer to the cells of the thread, {@link #ofConstant} and
+ * {@link #ofProbability} copy the cells of the maps they return, and release
+ * their solvers with reset() when a size is dropped or the pool is closed.
+ *
+ * @param <S> the solver.
+ * @param <R> the result of solving a position.
+ */
+public class BatchSolver<S, R> implements AutoCloseable {
+
+    private static final int MAX_SIZES_PER_THREAD = 4;
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    private final int threads;
+    private final SolverFactory<S> factory;
+    private final BiFunction<S, Cell[][], R> call;
+    private final Consumer<S> release;
+    private final ThreadLocal<Map<Size, Slot<S>>> slots;
+    private final List<Map<Size, Slot<S>>> allSlots;
+
+    /**
+     * @param factory builds a solver over the cells of a thread.
+     * @param call    solves the position in the cells with the solver.
+     * @param release frees a solver that is no longer used.
+     */
+    public BatchSolver(int threads, SolverFactory<S> factory, BiFunction<S, Cell[][], R> call, Consumer<S> release) {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.threads = threads;
+        this.factory = factory;
+        this.call = call;
+        this.release = release;
+        this.allSlots = new ArrayList<>();
+        this.slots = ThreadLocal.withInitial(this::newSlots);
+    }
+
+    /**
+     * @return a batch solver giving the known cells of every position.
+     */
+    public static <S extends IConstantMineSolver> BatchSolver<S, Map<Cell, Boolean>> ofConstant(int threads, SolverFactory<S> factory) {
+        return new BatchSolver<>(threads, factory, (solver, cells) -> detach(solver.getKnownCells()), IConstantMineSolver::reset);
+    }
+
+    /**
+     * @return a batch solver giving the approximate mine probabilities of the
+     * closed cells of every position.
+     */
+    public static <S extends IProbabilityMineSolver> BatchSolver<S, Map<Cell, Double>> ofProbability(int threads, SolverFactory<S> factory) {
+        return new BatchSolver<>(threads, factory, (solver, cells) -> detach(solver.getApproximateProbabilities()), IProbabilityMineSolver::reset);
+    }
+
+    /**
+     * Solve the positions as the returned stream is read, a few positions per
+     * thread ahead of it. Reading the stream rethrows anything a solver threw.
+     */
+    public Stream<R> solve(Stream<Position> positions) {
+        Iterator<Position> source = positions.iterator();
+        Iterator<R> results = new Iterator<>() {
+            private final Deque<Future<R>> inFlight = new ArrayDeque<>();
+
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !inFlight.isEmpty();
+            }
+
+            @Override
+            public R next() {
+                fill();
+                if (inFlight.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                return await(inFlight.poll());
+            }
+
+            private void fill() {
+                while (inFlight.size() < threads * IN_FLIGHT_PER_THREAD && source.hasNext()) {
+                    Position position = source.next();
+                    inFlight.add(executor.submit(() -> solve(position)));
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(results,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Stop the threads and free every solver they kept. If a position is still
+     * being solved after a minute the solvers are left to the threads, rather
+     * than freed while they are in use.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (allSlots) {
+            for (Map<Size, Slot<S>> threadSlots : allSlots) {
+                synchronized (threadSlots) {
+                    threadSlots.values().forEach(slot -> release.accept(slot.solver));
+                    threadSlots.clear();
+                }
+            }
+        }
+    }
+
+    private R solve(Position position) {
+        Map<Size, Slot<S>> threadSlots = slots.get();
+        var size = new Size(position.getWidth(), position.getHeight(), position.getMines());
+        Slot<S> slot;
+        synchronized (threadSlots) {
+            slot = threadSlots.computeIfAbsent(size, this::newSlot);
+        }
+        position.copyTo(slot.cells);
+        return call.apply(slot.solver, slot.cells);
+    }
+
+    private Slot<S> newSlot(Size size) {
+        Cell[][] cells = new Cell[size.width][size.height];
+        for (int x = 0; x < size.width; x++) {
+            for (int y = 0; y < size.height; y++) {
+                cells[x][y] = new Cell(x, y);
+            }
+        }
+        return new Slot<>(cells, factory.create(cells, size.width, size.height, size.mines));
+    }
+
+    private Map<Size, Slot<S>> newSlots() {
+        // least recently used first, so the oldest size is dropped when full
+        Map<Size, Slot<S>> threadSlots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Size, Slot<S>> eldest) {
+                if (size() > MAX_SIZES_PER_THREAD) {
+                    release.accept(eldest.getValue().solver);
+                    return true;
+                }
+                return false;
+            }
+        };
+        synchronized (allSlots) {
+            allSlots.add(threadSlots);
+        }
+        return threadSlots;
+    }
+
+    private static <R> R await(Future<R> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for a position");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    /**
+     * @return the map with its cells copied, so the cells of the thread can
+     * be reused.
+     */
+    private static <V> Map<Cell, V> detach(Map<Cell, V> results) {
+        Map<Cell, V> detached = new HashMap<>(results.size() * 2);
+        for (Map.Entry<Cell, V> entry : results.entrySet()) {
+            Cell cell = entry.getKey();
+            Cell copy = new Cell(cell.getX(), cell.getY());
+            copy.setState(cell.getState());
+            copy.setNumber(cell.getNumber());
+            detached.put(copy, entry.getValue());
+        }
+        return detached;
+    }
+
+    /**
+     * Builds a solver over the cells of a board, as the constructors of the
+     * solvers do.
+     */
+    @FunctionalInterface
+    public interface SolverFactory<S> {
+        S create(Cell[][] cells, int width, int height, int mines);
+    }
+
+    private static class Slot<S> {
+        private final Cell[][] cells;
+        private final S solver;
+
+        private Slot(Cell[][] cells, S solver) {
+            this.cells = cells;
+            this.solver = solver;
+        }
+    }
+
+    private static class Size {
+        private final int width;
+        private final int height;
+        private final int mines;
+
+        private Size(int width, int height, int mines) {
+            this.width = width;
+            this.height = height;
+            this.mines = mines;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Size)) {
+                return false;
+            }
+            Size other = (Size) o;
+            return width == other.width && height == other.height && mines == other.mines;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(width, height, mines);
+        }
+    }
+}
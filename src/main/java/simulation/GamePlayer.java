@@ -5,24 +5,85 @@ import main.java.game.CellState;
 import main.java.game.GameState;
 import main.java.game.MineSweeper;
 import main.java.solvers.constant.IConstantMineSolver;
+import main.java.solvers.constraints.OPBInstance;
+import main.java.solvers.constraints.PBConstraintGeneratorBoard;
+import main.java.solvers.constraints.PBConstraintGeneratorOpenCells;
+import main.java.solvers.probability.IProbabilityMineSolver;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
 
 public class GamePlayer {
 
     private final MineSweeper game;
     private final IConstantMineSolver solver;
+    private final Optional<IProbabilityMineSolver> probabilitySolver;
+    private final Random rand;
+    private final LatencyRecorder knownCellsLatency;
+    private final LatencyRecorder probabilityLatency;
+    private Optional<PositionWriter> positionWriter = Optional.empty();
+    private Optional<Path> exportDirectory = Optional.empty();
+    private long exportThreshold;
+    private String exportName;
+    private int moves;
     private double startTime;
     private double endTime;
 
     public GamePlayer(MineSweeper game, IConstantMineSolver solver) {
+        this(game, solver, Optional.empty());
+    }
+
+    /**
+     * @param probabilitySolver used to pick the cell to open when the constant
+     *                          solver finds nothing, a random cell is opened
+     *                          without one.
+     */
+    public GamePlayer(MineSweeper game, IConstantMineSolver solver, Optional<IProbabilityMineSolver> probabilitySolver) {
+        this(game, solver, probabilitySolver, new Random());
+    }
+
+    /**
+     * @param seed seeds the random moves, so a seeded game is played the same
+     *             way every time.
+     */
+    public GamePlayer(MineSweeper game, IConstantMineSolver solver, Optional<IProbabilityMineSolver> probabilitySolver,
+                      long seed) {
+        this(game, solver, probabilitySolver, new Random(seed));
+    }
+
+    private GamePlayer(MineSweeper game, IConstantMineSolver solver, Optional<IProbabilityMineSolver> probabilitySolver,
+                       Random rand) {
         this.game = game;
         this.solver = solver;
+        this.probabilitySolver = probabilitySolver;
+        this.rand = rand;
+        this.knownCellsLatency = new LatencyRecorder();
+        this.probabilityLatency = new LatencyRecorder();
+    }
+
+    /**
+     * Write the position and its constraints in OPB format whenever a call to
+     * the constant solver takes longer than the threshold, to
+     * directory/name-move.opb.
+     */
+    public void setSlowCallExport(long thresholdNanos, Path directory, String name) {
+        this.exportThreshold = thresholdNanos;
+        this.exportDirectory = Optional.of(directory);
+        this.exportName = name;
+    }
+
+    /**
+     * Write every position the constant solver is called on.
+     */
+    public void setPositionWriter(PositionWriter positionWriter) {
+        this.positionWriter = Optional.of(positionWriter);
     }
 
     public void play() {
-        Random rand = new Random();
 //        do {
 //            int x = rand.nextInt(game.getWidth());
 //            int y = rand.nextInt(game.getHeight());
@@ -31,7 +92,17 @@ public class GamePlayer {
 //        } while (game.getState() != GameState.RUNNING);
         startTime = System.nanoTime();
         while (game.getState() == GameState.RUNNING) {
+            if (positionWriter.isPresent()) {
+                writePosition(positionWriter.get());
+            }
+            long callStart = System.nanoTime();
             Map<Cell, Boolean> known = solver.getKnownCells();
+            long callTime = System.nanoTime() - callStart;
+            knownCellsLatency.record(callTime);
+            if (exportDirectory.isPresent() && callTime > exportThreshold) {
+                exportPosition(exportDirectory.get());
+            }
+            moves++;
             boolean change = false;
             for (Map.Entry<Cell, Boolean> pair : known.entrySet()) {
                 Cell cell = pair.getKey();
@@ -45,14 +116,43 @@ public class GamePlayer {
                 }
             }
             if (!change) {
-                int x = rand.nextInt(game.getWidth());
-                int y = rand.nextInt(game.getHeight());
-                game.openCell(x, y);
+                List<Cell> bestCells = List.of();
+                if (probabilitySolver.isPresent()) {
+                    callStart = System.nanoTime();
+                    bestCells = probabilitySolver.get().getBestSafeProbabilityCells();
+                    probabilityLatency.record(System.nanoTime() - callStart);
+                }
+                if (bestCells.isEmpty()) {
+                    int x = rand.nextInt(game.getWidth());
+                    int y = rand.nextInt(game.getHeight());
+                    game.openCell(x, y);
+                } else {
+                    Cell cell = bestCells.get(rand.nextInt(bestCells.size()));
+                    game.openCell(cell.getX(), cell.getY());
+                }
             }
         }
         endTime = System.nanoTime();
     }
 
+    private void writePosition(PositionWriter writer) {
+        try {
+            writer.write(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void exportPosition(Path directory) {
+        var instance = OPBInstance.of(game.getCells(), game.getWidth(), game.getHeight(), game.getMines(),
+                new PBConstraintGeneratorBoard(), new PBConstraintGeneratorOpenCells(game.getBoardState()));
+        try {
+            instance.write(directory.resolve(exportName + "-" + moves + ".opb"));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     public double getEndTime() {
         return endTime;
     }
@@ -64,4 +164,18 @@ public class GamePlayer {
     public double getElapsedTime() {
         return endTime - startTime;
     }
+
+    /**
+     * @return the latency of every call to the constant solver.
+     */
+    public LatencyRecorder getKnownCellsLatency() {
+        return knownCellsLatency;
+    }
+
+    /**
+     * @return the latency of every call to the probability solver.
+     */
+    public LatencyRecorder getProbabilityLatency() {
+        return probabilityLatency;
+    }
 }
@@ -0,0 +1,63 @@
+package main.java.simulation;
+
+import java.util.Arrays;
+
+/**
+ * Every latency of a call, in nanoseconds, kept so percentiles can be read
+ * exactly rather than estimated. It is not thread safe, each thread keeps its
+ * own and they are added together at the end.
+ */
+public class LatencyRecorder {
+
+    private long[] samples;
+    private int count;
+    private boolean sorted;
+
+    public LatencyRecorder() {
+        this.samples = new long[64];
+        this.count = 0;
+        this.sorted = true;
+    }
+
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    public void addAll(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i]);
+        }
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile in (0, 100].
+     * @return the nearest rank percentile, 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        sort();
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return samples[Math.max(rank, 1) - 1];
+    }
+
+    public long getMax() {
+        return getPercentile(100);
+    }
+
+    private void sort() {
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package main.java.simulation;
+
+import main.java.game.Cell;
+import main.java.game.CellState;
+
+/**
+ * A board position detached from any game, what a solver can see of it: the
+ * size, the number of mines and the state of every cell. Small enough to be
+ * passed between threads, the cells are only made when it is copied into a
+ * Cell[][] to be solved.
+ */
+public class Position {
+
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final byte[] cells;     // cells[x * height + y], as in PositionWriter: 0-8 open, 9 closed, 10 flagged
+
+    Position(int width, int height, int mines, byte[] cells) {
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.cells = cells;
+    }
+
+    public static Position of(Cell[][] cells, int width, int height, int mines) {
+        byte[] states = new byte[width * height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                states[x * height + y] = (byte) PositionWriter.encode(cells[x][y]);
+            }
+        }
+        return new Position(width, height, mines, states);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMines() {
+        return mines;
+    }
+
+    /**
+     * Set the states and numbers of cells of the same size to this position.
+     */
+    public void copyTo(Cell[][] target) {
+        for (int x = 0; x < width; x++) {
+            Cell[] column = target[x];
+            for (int y = 0; y < height; y++) {
+                decode(cells[x * height + y], column[y]);
+            }
+        }
+    }
+
+    /**
+     * @return new cells holding this position.
+     */
+    public Cell[][] toCells() {
+        Cell[][] target = new Cell[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                target[x][y] = new Cell(x, y);
+            }
+        }
+        copyTo(target);
+        return target;
+    }
+
+    static void decode(int state, Cell cell) {
+        if (state == PositionWriter.CLOSED) {
+            cell.setState(CellState.CLOSED);
+            cell.setNumber(0);
+        } else if (state == PositionWriter.FLAGGED) {
+            cell.setState(CellState.FLAGGED);
+            cell.setNumber(0);
+        } else {
+            cell.setState(CellState.OPEN);
+            cell.setNumber(state);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package main.java.simulation;
+
+import main.java.game.Cell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the positions of a file written by {@link PositionWriter} one after
+ * the other, straight from a memory mapped view of the file.
+ * <p>
+ * Nothing is created per position: the cells of a position are written into
+ * the cells of the previous one, a new Cell[][] is only made when the size of
+ * the board changes. A solver built over {@link #getCells()} can be called
+ * again after {@link #next()}, as long as {@link #isNewBoard()} is false and
+ * the solver is reset if it keeps anything between calls. Files larger than a
+ * single mapping are mapped a window at a time.
+ */
+public class PositionReader implements Closeable {
+
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private Cell[][] cells;
+    private int width;
+    private int height;
+    private int mines;
+    private boolean newBoard;
+
+    public PositionReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.cells = new Cell[0][0];
+        map(0, 0);
+        if (size < PositionWriter.FILE_HEADER_BYTES || window.getInt() != PositionWriter.MAGIC) {
+            channel.close();
+            throw new IOException("Not a position file: " + file);
+        }
+        int version = window.getInt();
+        if (version != PositionWriter.VERSION) {
+            channel.close();
+            throw new IOException("Unknown position file version " + version + ": " + file);
+        }
+    }
+
+    /**
+     * Move on to the next position.
+     *
+     * @return false if there are no more positions.
+     */
+    public boolean next() throws IOException {
+        long position = windowStart + window.position();
+        if (position == size) {
+            return false;
+        }
+        if (size - position < PositionWriter.HEADER_BYTES) {
+            throw new IOException("Position at " + position + " is cut off");
+        }
+        if (window.remaining() < PositionWriter.HEADER_BYTES) {
+            map(position, PositionWriter.HEADER_BYTES);
+        }
+        int nextWidth = Short.toUnsignedInt(window.getShort(window.position()));
+        int nextHeight = Short.toUnsignedInt(window.getShort(window.position() + Short.BYTES));
+        long bytes = PositionWriter.recordBytes(nextWidth, nextHeight);
+        if (window.remaining() < bytes) {
+            map(position, bytes);
+            if (window.remaining() < bytes) {
+                throw new IOException("Position at " + position + " is cut off");
+            }
+        }
+        window.getShort();
+        window.getShort();
+        mines = window.getInt();
+        newBoard = nextWidth != width || nextHeight != height;
+        if (newBoard) {
+            width = nextWidth;
+            height = nextHeight;
+            cells = createCells(width, height);
+        }
+        decodeCells();
+        return true;
+    }
+
+    /**
+     * @return the cells of the current position, the same array as the last
+     * position unless {@link #isNewBoard()}.
+     */
+    public Cell[][] getCells() {
+        return cells;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMines() {
+        return mines;
+    }
+
+    /**
+     * @return a copy of the current position that is not changed by moving on.
+     */
+    public Position getPosition() {
+        return Position.of(cells, width, height, mines);
+    }
+
+    /**
+     * @return the positions left in the file, each a copy so they can be
+     * handed to other threads. The reader is moved on as the stream is used.
+     */
+    public Stream<Position> stream() {
+        Iterator<Position> positions = new Iterator<>() {
+            private boolean advanced;
+            private boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!advanced) {
+                    try {
+                        hasNext = PositionReader.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    advanced = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public Position next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                advanced = false;
+                return getPosition();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(positions,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * @return true if the current position is a different size from the last,
+     * so {@link #getCells()} is a new array.
+     */
+    public boolean isNewBoard() {
+        return newBoard;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void decodeCells() {
+        int packed = 0;
+        int i = 0;
+        for (int x = 0; x < width; x++) {
+            Cell[] column = cells[x];
+            for (int y = 0; y < height; y++, i++) {
+                if ((i & 1) == 0) {
+                    packed = window.get();
+                }
+                int nibble = (i & 1) == 0 ? packed & 0xF : (packed >> 4) & 0xF;
+                Position.decode(nibble, column[y]);
+            }
+        }
+    }
+
+    /**
+     * Map a window of the file from the position, at least as large as the
+     * given number of bytes if the file is.
+     */
+    private void map(long position, long minimum) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Math.max(WINDOW_SIZE, minimum), size - position));
+        windowStart = position;
+    }
+
+    private static Cell[][] createCells(int width, int height) {
+        Cell[][] cells = new Cell[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                cells[x][y] = new Cell(x, y);
+            }
+        }
+        return cells;
+    }
+}
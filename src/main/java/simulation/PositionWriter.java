@@ -0,0 +1,119 @@
+package main.java.simulation;
+
+import main.java.game.Cell;
+import main.java.game.CellState;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes positions in a compact binary format, to be read back with
+ * {@link PositionReader}. It can be shared by the threads of a simulation.
+ * <p>
+ * A file starts with the bytes "PBPC" and a version int. Each position is the
+ * width and height (unsigned shorts), the number of mines (int) and then a
+ * nibble per cell, in the order x * height + y with the first cell of a byte
+ * in its low nibble: 0-8 an open cell and its number, 9 a closed cell, 10 a
+ * flagged cell. All big-endian, an expert position takes 248 bytes.
+ */
+public class PositionWriter implements Closeable {
+
+    static final int MAGIC = 'P' << 24 | 'B' << 16 | 'P' << 8 | 'C';
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 2 * Integer.BYTES;
+    static final int HEADER_BYTES = 2 * Short.BYTES + Integer.BYTES;
+    static final int MAX_SIDE = 0xFFFF;
+    static final int CLOSED = 9;
+    static final int FLAGGED = 10;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long count;
+
+    public PositionWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION);
+    }
+
+    /**
+     * @return the number of bytes a position of the given size takes.
+     */
+    static long recordBytes(int width, int height) {
+        return HEADER_BYTES + ((long) width * height + 1) / 2;
+    }
+
+    public synchronized void write(Cell[][] cells, int width, int height, int mines) throws IOException {
+        if (width > MAX_SIDE || height > MAX_SIDE) {
+            throw new IllegalArgumentException("Board too large to write: " + width + "x" + height);
+        }
+        ensureRemaining(HEADER_BYTES);
+        buffer.putShort((short) width).putShort((short) height).putInt(mines);
+        int low = -1;
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int nibble = encode(cells[x][y]);
+                if (low < 0) {
+                    low = nibble;
+                } else {
+                    ensureRemaining(1);
+                    buffer.put((byte) (nibble << 4 | low));
+                    low = -1;
+                }
+            }
+        }
+        if (low >= 0) {
+            ensureRemaining(1);
+            buffer.put((byte) low);
+        }
+        count++;
+    }
+
+    /**
+     * @return the number of positions written so far.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    static int encode(Cell cell) {
+        if (cell.getState() == CellState.OPEN && cell.isMine()) {
+            throw new IllegalArgumentException("The game is over, " + cell + " is an open mine");
+        }
+        return switch (cell.getState()) {
+            case OPEN -> cell.getNumber();
+            case FLAGGED -> FLAGGED;
+            default -> CLOSED;
+        };
+    }
+
+    private void ensureRemaining(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
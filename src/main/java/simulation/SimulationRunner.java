@@ -0,0 +1,354 @@
+package main.java.simulation;
+
+import main.java.game.Difficulty;
+import main.java.game.GameState;
+import main.java.game.MineSweeper;
+import main.java.solvers.constant.BitboardMineSolver;
+import main.java.solvers.constant.IConstantMineSolver;
+import main.java.solvers.constant.PBMineSolver;
+import main.java.solvers.constant.SinglePointMineSolver;
+import main.java.solvers.probability.AdaptiveProbabilityMineSolver;
+import main.java.solvers.probability.IProbabilityMineSolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Plays seeded games headlessly on a pool of threads and reports the win rate,
+ * the games played per second and the latency percentiles of the solver calls.
+ * <p>
+ * Game i of a size is planted from seed + i, and thread t plays games t,
+ * t + threads, ... with its own solvers, latency recorders and pool for the
+ * frontier components, so threads share nothing until their results are added
+ * together. Arguments:
+ * <pre>
+ * --games n        games per size (100)
+ * --threads n      threads (available processors)
+ * --component-threads n
+ *                  threads each thread solves the frontier components of a
+ *                  position on (1, in the thread itself)
+ * --seed n         first seed (0)
+ * --solver name    pb, bitboard or singlepoint (pb)
+ * --no-probability open random cells rather than the safest when stuck
+ * --size WxHxM     a custom size, can be repeated (the three difficulties)
+ * --export-slow ms dir
+ *                  write positions whose constant solver call took longer
+ *                  than ms to dir in OPB format, see OPBInstance
+ * --record file    write every position the constant solver is called on to
+ *                  file, see PositionWriter
+ * --replay file    solve the positions of a recorded file with the constant
+ *                  solver instead of playing games, see BatchSolver
+ * </pre>
+ */
+public class SimulationRunner {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final int games;
+    private final int threads;
+    private final long seed;
+    private final String solverName;
+    private final boolean useProbability;
+    private int componentThreads = 1;
+    private Optional<Path> exportDirectory = Optional.empty();
+    private long exportThreshold;
+    private Optional<PositionWriter> positionWriter = Optional.empty();
+
+    public SimulationRunner(int games, int threads, long seed, String solverName, boolean useProbability) {
+        this.games = games;
+        this.threads = threads;
+        this.seed = seed;
+        this.solverName = solverName;
+        this.useProbability = useProbability;
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException, IOException {
+        int games = 100;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int componentThreads = 1;
+        long seed = 0;
+        String solverName = "pb";
+        boolean useProbability = true;
+        Optional<Path> exportDirectory = Optional.empty();
+        double exportMillis = 0;
+        Optional<Path> recordFile = Optional.empty();
+        Optional<Path> replayFile = Optional.empty();
+        List<int[]> sizes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games" -> games = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--component-threads" -> componentThreads = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--solver" -> solverName = args[++i];
+                case "--no-probability" -> useProbability = false;
+                case "--export-slow" -> {
+                    exportMillis = Double.parseDouble(args[++i]);
+                    exportDirectory = Optional.of(Paths.get(args[++i]));
+                }
+                case "--record" -> recordFile = Optional.of(Paths.get(args[++i]));
+                case "--replay" -> replayFile = Optional.of(Paths.get(args[++i]));
+                case "--size" -> {
+                    String[] parts = args[++i].split("x");
+                    sizes.add(new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])});
+                }
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if (replayFile.isPresent()) {
+            replay(replayFile.get(), threads, solverName);
+            return;
+        }
+        if (sizes.isEmpty()) {
+            for (Difficulty diff : Difficulty.values()) {
+                sizes.add(new int[]{diff.width, diff.height, diff.mines});
+            }
+        }
+
+        var runner = new SimulationRunner(games, threads, seed, solverName, useProbability);
+        runner.setComponentThreads(componentThreads);
+        if (exportDirectory.isPresent()) {
+            Files.createDirectories(exportDirectory.get());
+            runner.setSlowCallExport((long) (exportMillis * NANOS_PER_MILLI), exportDirectory.get());
+        }
+        Optional<PositionWriter> writer = Optional.empty();
+        if (recordFile.isPresent()) {
+            writer = Optional.of(new PositionWriter(recordFile.get()));
+            runner.setPositionWriter(writer.get());
+        }
+        System.out.printf("%d games per size on %d threads, %s solver%n", games, threads, solverName);
+        try {
+            for (int[] size : sizes) {
+                runner.run(size[0], size[1], size[2]).print();
+            }
+        } finally {
+            if (writer.isPresent()) {
+                writer.get().close();
+                System.out.printf("%d positions written to %s%n", writer.get().getCount(), recordFile.get());
+            }
+        }
+    }
+
+    /**
+     * Export the positions of solver calls slower than the threshold, see
+     * {@link GamePlayer#setSlowCallExport}.
+     */
+    public void setSlowCallExport(long thresholdNanos, Path directory) {
+        this.exportThreshold = thresholdNanos;
+        this.exportDirectory = Optional.of(directory);
+    }
+
+    /**
+     * Set the threads each thread solves the frontier components of a position
+     * on. Every thread has a pool of its own rather than sharing the common
+     * pool, so the threads do not wait on each other's components.
+     */
+    public void setComponentThreads(int componentThreads) {
+        this.componentThreads = componentThreads;
+    }
+
+    /**
+     * Write every position the constant solver is called on, from every
+     * thread.
+     */
+    public void setPositionWriter(PositionWriter positionWriter) {
+        this.positionWriter = Optional.of(positionWriter);
+    }
+
+    /**
+     * Play every game of a size and wait for them all to finish.
+     */
+    public SimulationResult run(int width, int height, int mines) throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<SimulationResult>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int first = t;
+                futures.add(executor.submit(() -> playGames(width, height, mines, first)));
+            }
+            SimulationResult result = new SimulationResult(width, height, mines);
+            for (Future<SimulationResult> future : futures) {
+                result.addAll(future.get());
+            }
+            result.setElapsedTime(System.nanoTime() - start);
+            return result;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private SimulationResult playGames(int width, int height, int mines, int first) {
+        SimulationResult result = new SimulationResult(width, height, mines);
+        ForkJoinPool pool = new ForkJoinPool(componentThreads);
+        try {
+            for (int i = first; i < games; i += threads) {
+                MineSweeper game = new MineSweeper(width, height, mines, seed + i);
+                Optional<IProbabilityMineSolver> probabilitySolver = Optional.empty();
+                if (useProbability) {
+                    var solver = new AdaptiveProbabilityMineSolver(game.getCells(), width, height, mines);
+                    solver.setFrontier(game.getFrontier());
+                    solver.getExactSolver().setPool(pool);
+                    solver.getEstimatingSolver().setSeed(seed + i);
+                    probabilitySolver = Optional.of(solver);
+                }
+                IConstantMineSolver solver = buildSolver(game, pool);
+                GamePlayer player = new GamePlayer(game, solver, probabilitySolver, seed + i);
+                if (exportDirectory.isPresent()) {
+                    player.setSlowCallExport(exportThreshold, exportDirectory.get(),
+                            String.format("%dx%d-%d-%d", width, height, mines, seed + i));
+                }
+                positionWriter.ifPresent(player::setPositionWriter);
+                try {
+                    player.play();
+                } finally {
+                    // need to make sure that the SAT4J solvers get garbage collected
+                    // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+                    solver.reset();
+                    probabilitySolver.ifPresent(IProbabilityMineSolver::reset);
+                }
+                result.addGame(player, game.getState() == GameState.WON);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return result;
+    }
+
+    private IConstantMineSolver buildSolver(MineSweeper game, ForkJoinPool pool) {
+        return switch (solverName) {
+            case "pb" -> {
+                var solver = new PBMineSolver(game);
+                solver.setPool(pool);
+                yield solver;
+            }
+            case "bitboard" -> new BitboardMineSolver(game);
+            case "singlepoint" -> new SinglePointMineSolver(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+            default -> throw new IllegalArgumentException("Unknown solver: " + solverName);
+        };
+    }
+
+    /**
+     * @return builds the named solver over cells, for positions with no game.
+     */
+    private static BatchSolver.SolverFactory<IConstantMineSolver> solverFactory(String solverName) {
+        return switch (solverName) {
+            case "pb" -> PBMineSolver::new;
+            case "bitboard" -> BitboardMineSolver::new;
+            case "singlepoint" -> SinglePointMineSolver::new;
+            default -> throw new IllegalArgumentException("Unknown solver: " + solverName);
+        };
+    }
+
+    /**
+     * Solve every position of a recorded file and report how fast it went.
+     */
+    private static void replay(Path file, int threads, String solverName) throws IOException {
+        long start = System.nanoTime();
+        long positions;
+        long known;
+        try (var reader = new PositionReader(file);
+             var batch = BatchSolver.ofConstant(threads, solverFactory(solverName))) {
+            LongSummaryStatistics stats = batch.solve(reader.stream())
+                    .mapToLong(Map::size)
+                    .summaryStatistics();
+            positions = stats.getCount();
+            known = stats.getSum();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d positions on %d threads, %s solver: %d known cells, %.0f positions/s%n",
+                positions, threads, solverName, known, positions / seconds);
+    }
+
+    /**
+     * The games played at one size, added together from every thread.
+     */
+    public static class SimulationResult {
+
+        private final int width;
+        private final int height;
+        private final int mines;
+        private final LatencyRecorder knownCellsLatency;
+        private final LatencyRecorder probabilityLatency;
+        private int games;
+        private int wins;
+        private long elapsedTime;
+
+        private SimulationResult(int width, int height, int mines) {
+            this.width = width;
+            this.height = height;
+            this.mines = mines;
+            this.knownCellsLatency = new LatencyRecorder();
+            this.probabilityLatency = new LatencyRecorder();
+        }
+
+        private void addGame(GamePlayer player, boolean won) {
+            games++;
+            if (won) {
+                wins++;
+            }
+            knownCellsLatency.addAll(player.getKnownCellsLatency());
+            probabilityLatency.addAll(player.getProbabilityLatency());
+        }
+
+        private void addAll(SimulationResult other) {
+            games += other.games;
+            wins += other.wins;
+            knownCellsLatency.addAll(other.knownCellsLatency);
+            probabilityLatency.addAll(other.probabilityLatency);
+        }
+
+        private void setElapsedTime(long elapsedTime) {
+            this.elapsedTime = elapsedTime;
+        }
+
+        public int getGames() {
+            return games;
+        }
+
+        public double getWinRate() {
+            return games == 0 ? 0 : (double) wins / games;
+        }
+
+        public double getGamesPerSecond() {
+            return games / (elapsedTime / 1e9);
+        }
+
+        public LatencyRecorder getKnownCellsLatency() {
+            return knownCellsLatency;
+        }
+
+        public LatencyRecorder getProbabilityLatency() {
+            return probabilityLatency;
+        }
+
+        public void print() {
+            System.out.printf("%dx%d, %d mines: %d games, %.1f%% won, %.2f games/s%n",
+                    width, height, mines, games, getWinRate() * 100, getGamesPerSecond());
+            printLatency("getKnownCells", knownCellsLatency);
+            printLatency("getProbabilities", probabilityLatency);
+        }
+
+        private static void printLatency(String name, LatencyRecorder latency) {
+            System.out.printf("  %-16s %8d calls  p50 %9.3f ms  p95 %9.3f ms  p99 %9.3f ms  max %9.3f ms%n",
+                    name,
+                    latency.getCount(),
+                    latency.getPercentile(50) / NANOS_PER_MILLI,
+                    latency.getPercentile(95) / NANOS_PER_MILLI,
+                    latency.getPercentile(99) / NANOS_PER_MILLI,
+                    latency.getMax() / NANOS_PER_MILLI);
+        }
+    }
+}
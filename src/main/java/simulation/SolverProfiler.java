@@ -1,49 +1,70 @@
 package main.java.simulation;
 
-import main.java.game.Board;
 import main.java.game.Difficulty;
-import main.java.game.MineField;
 import main.java.game.MineSweeper;
+import main.java.solvers.constant.BitboardMineSolver;
 import main.java.solvers.constant.PBMineSolver;
+import main.java.solvers.probability.AdaptiveProbabilityMineSolver;
 import main.java.solvers.probability.TrueProbabilityMineSolver;
 
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 
 public class SolverProfiler {
 
     private final List<Class> SOLVER_CLASS_LIST = Arrays.asList(
             //        SinglePointSolver.class,
             PBMineSolver.class,
+            BitboardMineSolver.class,
             TrueProbabilityMineSolver.class
     );
 
+    /**
+     * Plays 100 expert games, or with the arguments width height mines [games]
+     * plays boards of any size, e.g. 2000 2000 400000 to see how the solvers
+     * scale past the difficulty presets. Game i is planted from seed i, so
+     * every run and every solver plays the same boards.
+     */
     public static void main(String[] args) {
-        new SolverProfiler().startSim(100);
+        if (args.length >= 3) {
+            int howMany = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+            new SolverProfiler().startSim(howMany, Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+                    Integer.parseInt(args[2]));
+        } else {
+            new SolverProfiler().startSim(100, Difficulty.EXPERT.width, Difficulty.EXPERT.height,
+                    Difficulty.EXPERT.mines);
+        }
     }
 
-    private void startSim(int howMany) {
-        List<boolean[][]> fields = generateRandomFields(howMany, Difficulty.EXPERT);
+    private void startSim(int howMany, int width, int height, int mines) {
         List<Double> times = new ArrayList<>();
         for (int i = 0; i < howMany; i++) {
-            MineSweeper game1 = new MineSweeper(Difficulty.EXPERT);
-//            MineSweeper game2 = new MineSweeper(9, 9, 10);
-            replaceField(game1, fields.get(i));
-//            replaceField(game2, fields.get(i));
+            MineSweeper game1 = new MineSweeper(width, height, mines, i);
+//            MineSweeper game2 = new MineSweeper(width, height, mines, i);
 
-            PBMineSolver pbSolver = new PBMineSolver(game1.getCells(), game1.getWidth(),
-                    game1.getHeight(), game1.getMines());
+            PBMineSolver pbSolver = new PBMineSolver(game1);
 
 //            ProbabilitySolver probSolver = new ProbabilitySolver(game2.getCells(),
 //                    game2.getWidth(), game2.getHeight(), game2.getMines());
 
-            GamePlayer player1 = new GamePlayer(game1, pbSolver);
+            AdaptiveProbabilityMineSolver probabilitySolver = new AdaptiveProbabilityMineSolver(game1.getCells(),
+                    game1.getWidth(), game1.getHeight(), game1.getMines());
+            probabilitySolver.setFrontier(game1.getFrontier());
+
+            GamePlayer player1 = new GamePlayer(game1, pbSolver, Optional.of(probabilitySolver));
 //            GamePlayer player2 = new GamePlayer(game2, probSolver);
 
-            player1.play();
+            try {
+                player1.play();
 //            player2.play();
+            } finally {
+                // need to make sure that the SAT4J solvers get garbage collected
+                // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+                pbSolver.reset();
+                probabilitySolver.reset();
+            }
 
 //            System.out.println("PB\tvs.\tProbability");
 //            System.out.println(player1.getElapsedTime() + "\t" + player2.getElapsedTime());
@@ -57,44 +78,4 @@ public class SolverProfiler {
 
         System.out.println(avg / 1000000000);
     }
-
-    private void replaceField(MineSweeper game, boolean[][] newField) {
-        try {
-            Board board = game.getBoard();
-            MineField mineField = board.getField();
-            Field field = mineField.getClass().getDeclaredField("field");
-            field.setAccessible(true);
-            field.set(mineField, newField);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private boolean[][] deepCopy(boolean[][] matrix) {
-        return java.util.Arrays.stream(matrix)
-                .map(boolean[]::clone)
-                .toArray($ -> matrix.clone());
-    }
-
-    private List<boolean[][]> generateRandomFields(int howMany,
-                                                   Difficulty diff) {
-        List<boolean[][]> randomFields = new ArrayList<>();
-
-        for (int i = 0; i < howMany; i++) {
-            MineField mineField = new MineField(diff.height, diff.width,
-                    diff.mines);
-            boolean[][] field = null;
-            try {
-                Field f = mineField.getClass().getDeclaredField("field");
-                f.setAccessible(true);
-                field = (boolean[][]) f.get(mineField);
-            } catch (NoSuchFieldException | IllegalAccessException e) {
-                e.printStackTrace();
-            }
-            if (field != null) {
-                randomFields.add(field);
-            }
-        }
-        return randomFields;
-    }
 }
@@ -0,0 +1,40 @@
+package main.java.solvers;
+
+import main.java.game.Cell;
+
+import java.util.List;
+
+/**
+ * A group of closed shore cells that are linked together by the open cells
+ * touching them. Two different components never share an unknown cell, so
+ * each component can be solved on its own.
+ */
+public class FrontierComponent {
+
+    private final List<Cell> closedCells;
+    private final List<Cell> openCells;
+
+    public FrontierComponent(List<Cell> closedCells, List<Cell> openCells) {
+        this.closedCells = closedCells;
+        this.openCells = openCells;
+    }
+
+    /**
+     * @return the closed shore cells of this component, the unknowns.
+     */
+    public List<Cell> getClosedCells() {
+        return closedCells;
+    }
+
+    /**
+     * @return the open cells whose numbers constrain the closed cells of this
+     * component.
+     */
+    public List<Cell> getOpenCells() {
+        return openCells;
+    }
+
+    public int size() {
+        return closedCells.size();
+    }
+}
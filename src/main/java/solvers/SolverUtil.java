@@ -1,12 +1,19 @@
 package main.java.solvers;
 
 import main.java.game.Cell;
+import main.java.game.BoardState;
 import main.java.game.CellState;
+import main.java.game.Frontier;
+import main.java.game.NeighbourIndex;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -60,16 +67,16 @@ public class SolverUtil {
         return Optional.of(cells[x][y]);
     }
 
+    /**
+     * Allocates a new list, loops over the {@link NeighbourIndex} of the board
+     * should be preferred on hot paths.
+     */
     public static List<Cell> getNeighbours(Cell[][] cells, int x, int y) {
-        final int width = cells.length;
-        final int height = cells[0].length;
-        List<Cell> neighbours = new ArrayList<>();
-        for (int i = x - 1; i <= x + 1; i++) {
-            for (int j = y - 1; j <= y + 1; j++) {
-                if (i >= 0 && i < width && j >= 0 && j < height && !(i == x && j == y)) {
-                    neighbours.add(cells[i][j]);
-                }
-            }
+        NeighbourIndex index = NeighbourIndex.of(cells);
+        int i = index.index(x, y);
+        List<Cell> neighbours = new ArrayList<>(index.getCount(i));
+        for (int k = index.start(i); k < index.end(i); k++) {
+            neighbours.add(index.getCell(cells, index.neighbour(i, k)));
         }
         return neighbours;
     }
@@ -81,9 +88,15 @@ public class SolverUtil {
      * @return a list of cells that are classed as land cells.
      */
     public static List<Cell> getLandCells(Cell[][] cells) {
-        return cellMatrixToStream(cells)
-                .filter(cell -> cell.getState() == CellState.OPEN)
-                .collect(Collectors.toList());
+        return getLandCells(cells, BoardState.of(cells));
+    }
+
+    /**
+     * Same as {@link #getLandCells(Cell[][])} but read from the state of the
+     * board, such as the one the game keeps, instead of a copy of the cells.
+     */
+    public static List<Cell> getLandCells(Cell[][] cells, BoardState state) {
+        return maskToCells(cells, getLandMask(state));
     }
 
     /**
@@ -93,13 +106,15 @@ public class SolverUtil {
      * @return a list of cells that are classed as sea cells.
      */
     public static List<Cell> getSeaCells(Cell[][] cells) {
-        return cellMatrixToStream(cells)
-                .filter(cell -> cell.getState() != CellState.OPEN)
-                .filter(cell -> ((int) getNeighbours(cells, cell.getX(), cell.getY()).stream()
-                        .filter(c -> c.getState() == CellState.OPEN)
-                        .limit(1)
-                        .count()) == 0)
-                .collect(Collectors.toList());
+        return getSeaCells(cells, BoardState.of(cells));
+    }
+
+    /**
+     * Same as {@link #getSeaCells(Cell[][])} but read from the state of the
+     * board.
+     */
+    public static List<Cell> getSeaCells(Cell[][] cells, BoardState state) {
+        return maskToCells(cells, getSeaMask(state));
     }
 
     /**
@@ -110,16 +125,65 @@ public class SolverUtil {
      * @return a list of cells that are classed as closed shore cells.
      */
     public static List<Cell> getClosedShoreCells(Cell[][] cells) {
-        return cellMatrixToStream(cells)
-                .filter(cell -> cell.getState() != CellState.OPEN)
-                .filter(cell -> {
-                    List<Cell> neighbours = getNeighbours(cells, cell.getX(), cell.getY());
-                    return ((int) neighbours.stream()
-                            .filter(c -> c.getState() == CellState.OPEN)
-                            .limit(1)
-                            .count()) != 0;
-                })
-                .collect(Collectors.toList());
+        return getClosedShoreCells(cells, BoardState.of(cells));
+    }
+
+    /**
+     * Same as {@link #getClosedShoreCells(Cell[][])} but read from the state of
+     * the board.
+     */
+    public static List<Cell> getClosedShoreCells(Cell[][] cells, BoardState state) {
+        return maskToCells(cells, getClosedShoreMask(state));
+    }
+
+    /**
+     * @return the bitset of the land cells.
+     */
+    public static long[] getLandMask(BoardState state) {
+        return state.getOpen().clone();
+    }
+
+    /**
+     * @return the bitset of the sea cells, the cells that are not open and are
+     * not touched by an open cell.
+     */
+    public static long[] getSeaMask(BoardState state) {
+        long[] unopened = state.getUnopened();
+        long[] nearLand = state.dilate(state.getOpen());
+        for (int i = 0; i < unopened.length; i++) {
+            unopened[i] &= ~nearLand[i];
+        }
+        return unopened;
+    }
+
+    /**
+     * @return the bitset of the closed shore cells, the cells that are not open
+     * and are touched by an open cell.
+     */
+    public static long[] getClosedShoreMask(BoardState state) {
+        long[] unopened = state.getUnopened();
+        long[] nearLand = state.dilate(state.getOpen());
+        for (int i = 0; i < unopened.length; i++) {
+            unopened[i] &= nearLand[i];
+        }
+        return unopened;
+    }
+
+    /**
+     * @return the cells of the set bits, in board order.
+     */
+    public static List<Cell> maskToCells(Cell[][] cells, long[] mask) {
+        final int height = cells[0].length;
+        List<Cell> result = new ArrayList<>();
+        for (int w = 0; w < mask.length; w++) {
+            long word = mask[w];
+            while (word != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                result.add(cells[i / height][i % height]);
+                word &= word - 1;
+            }
+        }
+        return result;
     }
 
     /**
@@ -129,16 +193,130 @@ public class SolverUtil {
      * @return a list of cells that are classed as open shore cells.
      */
     public List<Cell> getOpenShoreCells(Cell[][] cells) {
+        NeighbourIndex index = NeighbourIndex.of(cells);
         return cellMatrixToStream(cells)
                 .filter(cell -> cell.getState() != CellState.OPEN)
-                .filter(cell -> {
-                    List<Cell> neighbours = getNeighbours(cells, cell.getX(), cell.getY());
-                    return ((int) neighbours.stream()
-                            .filter(c -> c.getState() != CellState.OPEN)
-                            .limit(1)
-                            .count()) != 0;
-                })
+                .filter(cell -> index.countUnopenedNeighbours(cells, cell.getX(), cell.getY()) != 0)
                 .collect(Collectors.toList());
     }
 
-}
\ No newline at end of file
+    /**
+     * Split the closed shore cells into independent components. Closed shore
+     * cells belong to the same component if they are linked by the open cells
+     * touching them, so no two components share an unknown cell or a
+     * constraint.
+     *
+     * @return a list of the frontier components, in board order.
+     */
+    public static List<FrontierComponent> getFrontierComponents(Cell[][] cells) {
+        return getFrontierComponents(cells, BoardState.of(cells));
+    }
+
+    /**
+     * Same as {@link #getFrontierComponents(Cell[][])} but the shore and land
+     * cells are read from the state of the board.
+     */
+    public static List<FrontierComponent> getFrontierComponents(Cell[][] cells, BoardState state) {
+        return getFrontierComponents(cells, getClosedShoreCells(cells, state), getLandCells(cells, state));
+    }
+
+    /**
+     * Same as {@link #getFrontierComponents(Cell[][])} but the shore and land
+     * cells are read from a frontier instead of found by scanning the board.
+     */
+    public static List<FrontierComponent> getFrontierComponents(Cell[][] cells, Frontier frontier) {
+        return getFrontierComponents(cells, frontier.getClosedShoreCells(), frontier.getLandCells());
+    }
+
+    private static List<FrontierComponent> getFrontierComponents(Cell[][] cells, List<Cell> shoreCells, List<Cell> landCells) {
+        NeighbourIndex neighbourIndex = NeighbourIndex.of(cells);
+
+        int[] index = new int[cells.length * cells[0].length];
+        Arrays.fill(index, -1);
+        for (int i = 0; i < shoreCells.size(); i++) {
+            Cell cell = shoreCells.get(i);
+            index[neighbourIndex.index(cell.getX(), cell.getY())] = i;
+        }
+
+        // union all closed neighbours of every open cell
+        int[] parent = new int[shoreCells.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        List<Cell> constraintCells = new ArrayList<>();
+        for (Cell cell : landCells) {
+            int first = -1;
+            int id = neighbourIndex.index(cell.getX(), cell.getY());
+            for (int k = neighbourIndex.start(id); k < neighbourIndex.end(id); k++) {
+                int i = index[neighbourIndex.neighbour(id, k)];
+                if (i < 0) {
+                    continue;
+                }
+                if (first < 0) {
+                    first = i;
+                    constraintCells.add(cell);
+                } else {
+                    union(parent, first, i);
+                }
+            }
+        }
+
+        Map<Integer, List<Cell>> closedByRoot = new LinkedHashMap<>();
+        for (int i = 0; i < shoreCells.size(); i++) {
+            closedByRoot.computeIfAbsent(find(parent, i), root -> new ArrayList<>()).add(shoreCells.get(i));
+        }
+        Map<Integer, List<Cell>> openByRoot = new LinkedHashMap<>();
+        for (Cell cell : constraintCells) {
+            int id = neighbourIndex.index(cell.getX(), cell.getY());
+            for (int k = neighbourIndex.start(id); k < neighbourIndex.end(id); k++) {
+                int i = index[neighbourIndex.neighbour(id, k)];
+                if (i >= 0) {
+                    openByRoot.computeIfAbsent(find(parent, i), root -> new ArrayList<>()).add(cell);
+                    break;
+                }
+            }
+        }
+
+        List<FrontierComponent> components = new ArrayList<>();
+        for (var pair : closedByRoot.entrySet()) {
+            List<Cell> openCells = openByRoot.getOrDefault(pair.getKey(), new ArrayList<>());
+            components.add(new FrontierComponent(pair.getValue(), openCells));
+        }
+        return components;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[rootB] = rootA;
+        }
+    }
+
+    /**
+     * Apply the mapper to every item on the given pool. Falls back to the
+     * calling thread when there is nothing to gain from going parallel.
+     *
+     * @return the mapped items, in the same order as the given items.
+     */
+    public static <T, R> List<R> mapInParallel(ForkJoinPool pool, List<T> items, Function<T, R> mapper) {
+        if (items.size() < 2 || pool.getParallelism() < 2) {
+            return items.stream()
+                    .map(mapper)
+                    .collect(Collectors.toList());
+        }
+        return pool.submit(() -> items.parallelStream()
+                .map(mapper)
+                .collect(Collectors.toList())
+        ).join();
+    }
+
+}
@@ -0,0 +1,494 @@
+package main.java.solvers.constant;
+
+import main.java.game.Cell;
+import main.java.game.CellState;
+import main.java.game.MineSweeper;
+import main.java.game.NeighbourIndex;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A constant solver that does not go through SAT4J. The closed shore cells are
+ * searched with backtracking on primitive arrays, the values of the cells are
+ * kept in bitmasks and the numbers of the open cells are propagated as soon as
+ * a cell is given a value.
+ * <p>
+ * It gives the same answers as {@link PBMineSolver}: every frontier component
+ * is solved on its own first and the mine count is only added when it can
+ * force more cells. The cells are searched in breadth first order over the
+ * open cells linking them, so the cells of a constraint are given values close
+ * together and propagation kicks in early. The arrays of the variables and
+ * constraints grow with the shore rather than being sized for the whole board,
+ * so a solver for a very large board stays small, and once grown a call only
+ * allocates the map it returns.
+ */
+public class BitboardMineSolver implements IConstantMineSolver {
+
+    private static final int MAX_NEIGHBOURS = 8;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Cell[][] cells;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final NeighbourIndex neighbourIndex;
+
+    // the problem, rebuilt on every call
+    private final int[] varOf;                // varOf[id], the variable of cell id, -1 if it is not a shore cell
+    private int[] cellOf;               // cellOf[v], the cell id of variable v
+    private int[] order;                // order[i], the variable searched in step i
+    private int[] componentStart;       // componentStart[k], the first step of component k
+    private int[] cellConstraints;      // cellConstraints[v * 8 + i], the constraints containing v
+    private int[] cellConstraintCount;
+    private int[] constraintCells;      // constraintCells[c * 8 + i], the variables of constraint c
+    private int[] constraintSize;
+    private int[] constraintNumber;
+    private int vars;
+    private int constraints;
+    private int components;
+    private int seaSize;
+
+    // the search state
+    private long[] assigned;
+    private long[] mine;
+    private long[] seenMine;
+    private long[] seenSafe;
+    private int[] residual;             // residual[c], the mines constraint c still needs
+    private int[] unassigned;           // unassigned[c], the variables of c without a value
+    private int[] trail;
+    private int[] decisionTrail;        // decisionTrail[d], the trail size before decision d
+    private int[] decisionStep;
+    private boolean[] decisionFlipped;
+    private int trailSize;
+    private int propagated;                   // the trail entries that have been propagated
+    private int assignedCount;
+    private int mineCount;
+    private int minShoreMines;
+    private int maxShoreMines;
+    private boolean seenSeaMine;
+    private boolean seenSeaSafe;
+
+    public BitboardMineSolver(Cell[][] cells, int width, int height, int mines) {
+        this.cells = cells;
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.neighbourIndex = NeighbourIndex.of(width, height);
+
+        this.varOf = new int[width * height];
+        int words = (INITIAL_CAPACITY + 63) / 64;
+        this.cellOf = new int[INITIAL_CAPACITY];
+        this.order = new int[INITIAL_CAPACITY];
+        this.componentStart = new int[INITIAL_CAPACITY + 1];
+        this.cellConstraints = new int[INITIAL_CAPACITY * MAX_NEIGHBOURS];
+        this.cellConstraintCount = new int[INITIAL_CAPACITY];
+        this.assigned = new long[words];
+        this.mine = new long[words];
+        this.seenMine = new long[words];
+        this.seenSafe = new long[words];
+        this.trail = new int[INITIAL_CAPACITY];
+        this.decisionTrail = new int[INITIAL_CAPACITY];
+        this.decisionStep = new int[INITIAL_CAPACITY];
+        this.decisionFlipped = new boolean[INITIAL_CAPACITY];
+        this.constraintCells = new int[INITIAL_CAPACITY * MAX_NEIGHBOURS];
+        this.constraintSize = new int[INITIAL_CAPACITY];
+        this.constraintNumber = new int[INITIAL_CAPACITY];
+        this.residual = new int[INITIAL_CAPACITY];
+        this.unassigned = new int[INITIAL_CAPACITY];
+    }
+
+    public BitboardMineSolver(MineSweeper game) {
+        this(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+    }
+
+    public Map<Cell, Boolean> getKnownCells() {
+        buildProblem();
+        resetSearch();
+
+        // forced values of a component are also forced once the mine count is added
+        minShoreMines = 0;
+        maxShoreMines = Integer.MAX_VALUE;
+        for (int k = 0; k < components; k++) {
+            computeBackbone(componentStart[k], componentStart[k + 1]);
+        }
+        if (isMineCountIrrelevant()) {
+            return collectResults(false, false);
+        }
+
+        minShoreMines = Math.max(0, mines - seaSize);
+        maxShoreMines = mines;
+        Arrays.fill(seenMine, 0);
+        Arrays.fill(seenSafe, 0);
+        seenSeaMine = false;
+        seenSeaSafe = false;
+        if (!computeBackbone(0, vars)) {
+            undo(0);
+            return new HashMap<>();
+        }
+
+        // if one sea cell is safe/a mine than all sea cells are safe/a mine
+        boolean seaMine = false;
+        boolean seaSafe = false;
+        if (seaSize > 0) {
+            seaSafe = !seenSeaMine && !hasSeaModel(minShoreMines, mines - 1);
+            seaMine = !seenSeaSafe && !hasSeaModel(mines - seaSize + 1, maxShoreMines);
+        }
+        return collectResults(seaMine, seaSafe);
+    }
+
+    /**
+     * Same check as {@link PBMineSolver}, the components hold at least the
+     * mines already known and at most all the cells not known to be safe.
+     */
+    private boolean isMineCountIrrelevant() {
+        int minMines = mineCount;
+        int maxMines = vars - (assignedCount - mineCount);
+        return maxMines < mines && mines - minMines < seaSize;
+    }
+
+    /**
+     * @return true if the shore can hold a number of mines in the given range.
+     */
+    private boolean hasSeaModel(int minMines, int maxMines) {
+        int min = minShoreMines;
+        int max = maxShoreMines;
+        minShoreMines = Math.max(min, minMines);
+        maxShoreMines = Math.min(max, maxMines);
+        int start = trailSize;
+        boolean found = findModel(0, vars);
+        if (found) {
+            recordModel(0, vars);
+        }
+        undo(start);
+        minShoreMines = min;
+        maxShoreMines = max;
+        return found;
+    }
+
+    private Map<Cell, Boolean> collectResults(boolean seaMine, boolean seaSafe) {
+        Map<Cell, Boolean> results = new HashMap<>();
+        for (int v = 0; v < vars; v++) {
+            if (isSet(assigned, v)) {
+                results.put(neighbourIndex.getCell(cells, cellOf[v]), isSet(mine, v));
+            }
+        }
+        if (seaMine || seaSafe) {
+            for (int id = 0; id < width * height; id++) {
+                Cell cell = neighbourIndex.getCell(cells, id);
+                if (varOf[id] < 0 && cell.getState() != CellState.OPEN) {
+                    results.put(cell, seaMine);
+                }
+            }
+        }
+        undo(0);
+        return results;
+    }
+
+    /**
+     * Find the forced values of the variables searched in steps [from, to). A
+     * first model is found, after that every variable is only tried with the
+     * value it has not been seen with. Forced values are left on the trail.
+     *
+     * @return false if the variables have no model.
+     */
+    private boolean computeBackbone(int from, int to) {
+        int base = trailSize;
+        if (!findModel(from, to)) {
+            undo(base);
+            return false;
+        }
+        recordModel(from, to);
+        undo(base);
+
+        for (int step = from; step < to; step++) {
+            int v = order[step];
+            if (isSet(assigned, v) || (isSet(seenMine, v) && isSet(seenSafe, v))) {
+                continue;
+            }
+            boolean wasMine = isSet(seenMine, v);
+            int start = trailSize;
+            enqueue(v, !wasMine);
+            if (findModel(from, to)) {
+                recordModel(from, to);
+                undo(start);
+            } else {
+                // the value is implied, so propagating it can not fail
+                undo(start);
+                enqueue(v, wasMine);
+                propagate();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Depth first search for a model of the variables searched in steps
+     * [from, to), starting from the values already on the trail. Safe is tried
+     * before mine since most cells are safe.
+     *
+     * @return true if a model was found, it is left on the trail.
+     */
+    private boolean findModel(int from, int to) {
+        int depth = 0;
+        int step = from;
+        boolean consistent = propagate();
+        while (true) {
+            if (consistent) {
+                while (step < to && isSet(assigned, order[step])) {
+                    step++;
+                }
+                if (step == to) {
+                    return true;
+                }
+                decisionTrail[depth] = trailSize;
+                decisionStep[depth] = step;
+                decisionFlipped[depth] = false;
+                depth++;
+                enqueue(order[step], false);
+            } else {
+                while (depth > 0 && decisionFlipped[depth - 1]) {
+                    depth--;
+                }
+                if (depth == 0) {
+                    return false;
+                }
+                int d = depth - 1;
+                undo(decisionTrail[d]);
+                decisionFlipped[d] = true;
+                step = decisionStep[d];
+                enqueue(order[step], true);
+            }
+            consistent = propagate();
+        }
+    }
+
+    private void recordModel(int from, int to) {
+        for (int step = from; step < to; step++) {
+            int v = order[step];
+            if (isSet(mine, v)) {
+                set(seenMine, v);
+            } else {
+                set(seenSafe, v);
+            }
+        }
+        int seaMines = mines - mineCount;
+        seenSeaMine |= seaMines > 0;
+        seenSeaSafe |= seaMines < seaSize;
+    }
+
+    private void enqueue(int v, boolean isMine) {
+        set(assigned, v);
+        if (isMine) {
+            set(mine, v);
+            mineCount++;
+        } else {
+            clear(mine, v);
+        }
+        assignedCount++;
+        trail[trailSize++] = v;
+    }
+
+    /**
+     * Apply the open cell numbers to the values on the trail. A constraint that
+     * needs no more mines makes the rest of its cells safe, one that needs all
+     * of them makes them mines.
+     *
+     * @return false if a constraint or the mine count can no longer be met.
+     */
+    private boolean propagate() {
+        while (propagated < trailSize) {
+            int v = trail[propagated++];
+            boolean isMine = isSet(mine, v);
+            int first = v * MAX_NEIGHBOURS;
+            int last = first + cellConstraintCount[v];
+            for (int i = first; i < last; i++) {
+                int c = cellConstraints[i];
+                unassigned[c]--;
+                if (isMine) {
+                    residual[c]--;
+                }
+            }
+            for (int i = first; i < last; i++) {
+                int c = cellConstraints[i];
+                if (residual[c] < 0 || residual[c] > unassigned[c]) {
+                    return false;
+                }
+                if (unassigned[c] > 0 && (residual[c] == 0 || residual[c] == unassigned[c])) {
+                    boolean forced = residual[c] > 0;
+                    int end = c * MAX_NEIGHBOURS + constraintSize[c];
+                    for (int j = c * MAX_NEIGHBOURS; j < end; j++) {
+                        int w = constraintCells[j];
+                        if (!isSet(assigned, w)) {
+                            enqueue(w, forced);
+                        }
+                    }
+                }
+            }
+        }
+        return mineCount <= maxShoreMines && mineCount + (vars - assignedCount) >= minShoreMines;
+    }
+
+    private void undo(int size) {
+        while (trailSize > size) {
+            int v = trail[--trailSize];
+            boolean isMine = isSet(mine, v);
+            if (trailSize < propagated) {
+                int first = v * MAX_NEIGHBOURS;
+                int last = first + cellConstraintCount[v];
+                for (int i = first; i < last; i++) {
+                    int c = cellConstraints[i];
+                    unassigned[c]++;
+                    if (isMine) {
+                        residual[c]++;
+                    }
+                }
+            }
+            clear(assigned, v);
+            clear(mine, v);
+            assignedCount--;
+            if (isMine) {
+                mineCount--;
+            }
+        }
+        propagated = Math.min(propagated, size);
+    }
+
+    private void resetSearch() {
+        Arrays.fill(assigned, 0);
+        Arrays.fill(mine, 0);
+        Arrays.fill(seenMine, 0);
+        Arrays.fill(seenSafe, 0);
+        trailSize = 0;
+        propagated = 0;
+        assignedCount = 0;
+        mineCount = 0;
+        for (int c = 0; c < constraints; c++) {
+            residual[c] = constraintNumber[c];
+            unassigned[c] = constraintSize[c];
+        }
+    }
+
+    private void buildProblem() {
+        vars = 0;
+        seaSize = 0;
+        for (int id = 0; id < width * height; id++) {
+            varOf[id] = -1;
+            if (neighbourIndex.getCell(cells, id).getState() == CellState.OPEN) {
+                continue;
+            }
+            if (hasOpenNeighbour(id)) {
+                if (vars == cellOf.length) {
+                    growVariables();
+                }
+                varOf[id] = vars;
+                cellOf[vars] = id;
+                cellConstraintCount[vars] = 0;
+                vars++;
+            } else {
+                seaSize++;
+            }
+        }
+
+        constraints = 0;
+        for (int id = 0; id < width * height; id++) {
+            Cell cell = neighbourIndex.getCell(cells, id);
+            if (cell.getState() != CellState.OPEN) {
+                continue;
+            }
+            if (constraints == constraintSize.length) {
+                growConstraints();
+            }
+            int c = constraints;
+            int size = 0;
+            for (int k = neighbourIndex.start(id); k < neighbourIndex.end(id); k++) {
+                int v = varOf[neighbourIndex.neighbour(id, k)];
+                if (v >= 0) {
+                    constraintCells[c * MAX_NEIGHBOURS + size++] = v;
+                    cellConstraints[v * MAX_NEIGHBOURS + cellConstraintCount[v]++] = c;
+                }
+            }
+            if (size > 0) {
+                constraintSize[c] = size;
+                constraintNumber[c] = cell.getNumber();
+                constraints++;
+            }
+        }
+
+        // breadth first over the constraints, every tree of the search is a component
+        Arrays.fill(assigned, 0);
+        int steps = 0;
+        components = 0;
+        for (int v = 0; v < vars; v++) {
+            if (isSet(assigned, v)) {
+                continue;
+            }
+            componentStart[components++] = steps;
+            set(assigned, v);
+            order[steps++] = v;
+            for (int head = steps - 1; head < steps; head++) {
+                int u = order[head];
+                for (int i = u * MAX_NEIGHBOURS; i < u * MAX_NEIGHBOURS + cellConstraintCount[u]; i++) {
+                    int c = cellConstraints[i];
+                    for (int j = c * MAX_NEIGHBOURS; j < c * MAX_NEIGHBOURS + constraintSize[c]; j++) {
+                        int w = constraintCells[j];
+                        if (!isSet(assigned, w)) {
+                            set(assigned, w);
+                            order[steps++] = w;
+                        }
+                    }
+                }
+            }
+        }
+        componentStart[components] = steps;
+    }
+
+    private void growVariables() {
+        int capacity = cellOf.length * 2;
+        int words = (capacity + 63) / 64;
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        order = Arrays.copyOf(order, capacity);
+        componentStart = Arrays.copyOf(componentStart, capacity + 1);
+        cellConstraints = Arrays.copyOf(cellConstraints, capacity * MAX_NEIGHBOURS);
+        cellConstraintCount = Arrays.copyOf(cellConstraintCount, capacity);
+        assigned = Arrays.copyOf(assigned, words);
+        mine = Arrays.copyOf(mine, words);
+        seenMine = Arrays.copyOf(seenMine, words);
+        seenSafe = Arrays.copyOf(seenSafe, words);
+        trail = Arrays.copyOf(trail, capacity);
+        decisionTrail = Arrays.copyOf(decisionTrail, capacity);
+        decisionStep = Arrays.copyOf(decisionStep, capacity);
+        decisionFlipped = Arrays.copyOf(decisionFlipped, capacity);
+    }
+
+    private void growConstraints() {
+        int capacity = constraintSize.length * 2;
+        constraintCells = Arrays.copyOf(constraintCells, capacity * MAX_NEIGHBOURS);
+        constraintSize = Arrays.copyOf(constraintSize, capacity);
+        constraintNumber = Arrays.copyOf(constraintNumber, capacity);
+        residual = Arrays.copyOf(residual, capacity);
+        unassigned = Arrays.copyOf(unassigned, capacity);
+    }
+
+    private boolean hasOpenNeighbour(int id) {
+        for (int k = neighbourIndex.start(id); k < neighbourIndex.end(id); k++) {
+            if (neighbourIndex.getCell(cells, neighbourIndex.neighbour(id, k)).getState() == CellState.OPEN) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSet(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+}
@@ -13,4 +13,12 @@ public interface IConstantMineSolver {
      * @return Mapping of cell to Boolean, true means mine and false means safe.
      */
     Map<Cell, Boolean> getKnownCells();
+
+    /**
+     * Release anything the solver holds on to between calls, such as a SAT4J
+     * instance or a listener on the game. Should be called once the solver is
+     * finished with.
+     */
+    default void reset() {
+    }
 }
@@ -0,0 +1,101 @@
+package main.java.solvers.constant;
+
+import main.java.game.Cell;
+import main.java.solvers.SolverUtil;
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the backbone (the cells that have the same value in every model) of
+ * a set of cells.
+ * <p>
+ * A first model is found, after that every unresolved cell is only tested
+ * against the opposite of the value it has been seen with. Every model that is
+ * found on the way is used to drop the cells that have now been seen as both a
+ * mine and safe, so the number of SAT calls ends up close to the number of
+ * cells whose value is forced.
+ */
+public class PBBackbone {
+
+    private int satCalls;
+
+    /**
+     * @param solver solver containing the constraints of the board.
+     * @param cells  cells to find the forced value of.
+     * @param width  width of the board, used to encode the cells.
+     * @return mapping of the forced cells, true means mine and false means safe.
+     * Empty if the constraints can not be satisfied.
+     */
+    public Map<Cell, Boolean> compute(IPBSolver solver, List<Cell> cells, int width) throws TimeoutException {
+        Map<Cell, Boolean> results = new HashMap<>();
+        satCalls = 0;
+
+        if (!isSatisfiable(solver, new VecInt())) {
+            return results;
+        }
+
+        int[] literals = new int[cells.size()];
+        for (int i = 0; i < literals.length; i++) {
+            literals[i] = SolverUtil.encodeCellId(cells.get(i), width);
+        }
+        boolean[] seenMine = new boolean[literals.length];
+        boolean[] seenSafe = new boolean[literals.length];
+        updateSeenValues(solver.model(), literals, seenMine, seenSafe);
+
+        IVecInt assumptions = new VecInt(1);
+        for (int i = 0; i < literals.length; i++) {
+            if (seenMine[i] && seenSafe[i]) {
+                continue;
+            }
+            // only the value the cell has not been seen with can fail
+            boolean wasMine = seenMine[i];
+            assumptions.clear();
+            assumptions.push(wasMine ? -literals[i] : literals[i]);
+            if (isSatisfiable(solver, assumptions)) {
+                updateSeenValues(solver.model(), literals, seenMine, seenSafe);
+            } else {
+                results.put(cells.get(i), wasMine);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return the number of SAT calls made by the last computation.
+     */
+    public int getSatCalls() {
+        return satCalls;
+    }
+
+    private boolean isSatisfiable(IPBSolver solver, IVecInt assumptions) throws TimeoutException {
+        satCalls++;
+        return solver.isSatisfiable(assumptions);
+    }
+
+    private void updateSeenValues(int[] model, int[] literals, boolean[] seenMine, boolean[] seenSafe) {
+        int maxVar = 0;
+        for (int lit : model) {
+            maxVar = Math.max(maxVar, Math.abs(lit));
+        }
+        // literals that are not part of the model have not been given a value
+        int[] values = new int[maxVar + 1];
+        for (int lit : model) {
+            values[Math.abs(lit)] = lit;
+        }
+        for (int i = 0; i < literals.length; i++) {
+            int lit = literals[i];
+            int value = lit < values.length ? values[lit] : 0;
+            if (value > 0) {
+                seenMine[i] = true;
+            } else if (value < 0) {
+                seenSafe[i] = true;
+            }
+        }
+    }
+}
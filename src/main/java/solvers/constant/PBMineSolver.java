@@ -1,123 +1,194 @@
 package main.java.solvers.constant;
 
 import main.java.game.Cell;
+import main.java.game.Frontier;
+import main.java.game.MineSweeper;
+import main.java.solvers.FrontierComponent;
 import main.java.solvers.SolverUtil;
-import main.java.solvers.constraints.IPBConstraintGenerator;
-import main.java.solvers.constraints.PBConstraintGeneratorBoard;
-import main.java.solvers.constraints.PBConstraintGeneratorOpenCells;
-import org.sat4j.core.VecInt;
+import main.java.solvers.constraints.PBConstraintGeneratorComponent;
+import main.java.solvers.constraints.PBPresolver;
+import main.java.solvers.metrics.SolverMetrics;
+import main.java.solvers.metrics.SolverTrace;
 import org.sat4j.pb.SolverFactory;
 import org.sat4j.pb.core.PBSolver;
-import org.sat4j.specs.ContradictionException;
-import org.sat4j.specs.IConstr;
-import org.sat4j.specs.IVecInt;
 import org.sat4j.specs.TimeoutException;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 
 public class PBMineSolver implements IConstantMineSolver {
 
+    private static final SolverMetrics METRICS = SolverMetrics.of("PBMineSolver");
+
     private final Cell[][] cells;
     private final int width;
     private final int height;
     private final int mines;
+    private final PBSolverSession session;
+    private final PBBackbone backbone;
+    private ForkJoinPool pool;
+    private Optional<Frontier> frontier;
 
     public PBMineSolver(Cell[][] cells, int width, int height, int mines) {
         this.cells = cells;
         this.width = width;
         this.height = height;
         this.mines = mines;
+        this.session = new PBSolverSession(cells, width, height, mines);
+        this.backbone = new PBBackbone();
+        this.pool = ForkJoinPool.commonPool();
+        this.frontier = Optional.empty();
     }
 
-    public Map<Cell, Boolean> getKnownCells() {
-        Map<Cell, Boolean> results = new HashMap<>();
+    public PBMineSolver(MineSweeper game) {
+        this(game.getCells(), game.getWidth(), game.getHeight(), game.getMines());
+        setFrontier(game.getFrontier());
+        session.listenTo(game);
+    }
 
-        PBSolver solver = SolverFactory.newDefault();
-        List<IPBConstraintGenerator> constraintGenerators = List.of(
-                new PBConstraintGeneratorBoard(),
-                new PBConstraintGeneratorOpenCells()
-        );
+    /**
+     * Synchronized, the session is shared when the GUI uses one solver for
+     * the hint button and the solver workers.
+     */
+    public synchronized Map<Cell, Boolean> getKnownCells() {
+        SolverTrace trace = SolverTrace.start(METRICS, "getKnownCells");
+        Map<Cell, Boolean> results = getKnownCells(trace);
+        trace.finish(results.size());
+        return results;
+    }
 
-        for (var constraintGenerator : constraintGenerators) {
-            constraintGenerator.generate(solver, cells, width, height, mines);
-        }
+    private Map<Cell, Boolean> getKnownCells(SolverTrace trace) {
+        List<Cell> seaCells = getSeaCells();
+        List<FrontierComponent> components = getFrontierComponents();
+        trace.frontierFound(components, seaCells.size());
 
-        List<Cell> shoreCells = SolverUtil.getClosedShoreCells(cells);
-
-        testShoreCells(results, solver, shoreCells);
-
-        // Test a sea cell
-        List<Cell> seaCells = SolverUtil.getSeaCells(cells);
-        if (!seaCells.isEmpty()) {
-            // if one sea cell is safe/a mine than all sea cells are safe/a mine
-            Cell cell = seaCells.get(0);
-            for (int weight = 0; weight <= 1; weight++) {
-                Optional<Boolean> isMine =
-                        checkCellWithWeight(solver, cell, weight);
-                if (isMine.isPresent()) {
-                    for (Cell c : seaCells) {
-                        results.put(c, isMine.get());
-                    }
-                    break;
-                }
-            }
+        // components share no cells so they are solved in parallel, each with its own solver
+        Map<Cell, Boolean> results = new HashMap<>();
+        for (Map<Cell, Boolean> known : SolverUtil.mapInParallel(pool, components, c -> solveComponent(c, trace))) {
+            results.putAll(known);
         }
+        trace.componentsSolved();
+        if (isMineCountIrrelevant(components, results, seaCells.size())) {
+            return results;
+        }
+        return solveWithMineCount(seaCells, trace);
+    }
 
-        // need to make sure that solver will get garbage collected
-        // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
-        solver.reset();
-        solver = null;
-        return results;
+    /**
+     * Solve a component on its own, without the total number of mines. Anything
+     * that is forced here is also forced once the mine count is added.
+     */
+    private Map<Cell, Boolean> solveComponent(FrontierComponent component, SolverTrace trace) {
+        PBSolver solver = SolverFactory.newDefault();
+        var presolver = new PBPresolver();
+        var generator = new PBConstraintGeneratorComponent(component);
+        generator.setPresolver(presolver);
+        generator.generate(solver, cells, width, height, mines);
+        presolver.flush(solver);
+        trace.addConstraints(presolver.getConstraintCount());
+        var componentBackbone = new PBBackbone();
+        try {
+            return componentBackbone.compute(solver, component.getClosedCells(), width);
+        } catch (TimeoutException t) {
+            t.printStackTrace();
+            return new HashMap<>();
+        } finally {
+            trace.addSatCalls(componentBackbone.getSatCalls());
+            // need to make sure that solver will get garbage collected
+            // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+            solver.reset();
+        }
     }
 
-    private void testShoreCells(Map<Cell, Boolean> results, PBSolver solver, List<Cell> shoreCells) {
-        // Test all shore cells
-        for (Cell cell : shoreCells) {
-            for (int weight = 0; weight <= 1; weight++) {
-                Optional<Boolean> isMine =
-                        checkCellWithWeight(solver, cell, weight);
-                if (isMine.isPresent()) {
-                    results.put(cell, isMine.get());
-                    break;
-                }
+    /**
+     * The mine count can only force more cells if it cuts off some of the mine
+     * counts the components can take. The components hold at least the mines
+     * that are already known and at most all the cells not known to be safe,
+     * the rest of the mines are in the sea. If even the extremes leave the sea
+     * with some, but not all, of its cells as mines, the mine count does not
+     * matter and the sea cells stay unknown.
+     */
+    private boolean isMineCountIrrelevant(List<FrontierComponent> components, Map<Cell, Boolean> known, int seaSize) {
+        int minMines = 0;
+        int maxMines = 0;
+        for (FrontierComponent component : components) {
+            maxMines += component.size();
+        }
+        for (boolean isMine : known.values()) {
+            if (isMine) {
+                minMines++;
+            } else {
+                maxMines--;
             }
         }
+        return maxMines < mines && mines - minMines < seaSize;
     }
 
+    private Map<Cell, Boolean> solveWithMineCount(List<Cell> seaCells, SolverTrace trace) {
+        Map<Cell, Boolean> results = new HashMap<>();
 
-    private Optional<Boolean> checkCellWithWeight(PBSolver solver, final Cell cell, final int weight) {
-        IVecInt literals = new VecInt();
-        IVecInt coefficients = new VecInt();
-        IConstr atMostConstraint = null;
-        IConstr atLeastConstraint = null;
-
-        Optional<Boolean> result = Optional.empty();
+        // the session only adds the constraints of cells opened since the last call
+        PBSolver solver = session.update();
+        trace.addConstraints(session.getLastUpdateConstraints());
 
-        literals.push(SolverUtil.encodeCellId(cell, width));
-        coefficients.push(1);
+        List<Cell> candidates = new ArrayList<>(frontier.map(Frontier::getClosedShoreCells).orElseGet(() -> SolverUtil.getClosedShoreCells(cells)));
+        // if one sea cell is safe/a mine than all sea cells are safe/a mine
+        Cell seaCell = seaCells.isEmpty() ? null : seaCells.get(0);
+        if (seaCell != null) {
+            candidates.add(seaCell);
+        }
 
         try {
-            atMostConstraint = solver.addAtMost(literals, coefficients, weight);
-            atLeastConstraint = solver.addAtLeast(literals, coefficients, weight);
-            if (!solver.isSatisfiable()) {
-                boolean isMine = weight != 1;
-                result = Optional.of(isMine);
-            }
-        } catch (ContradictionException e) {
-            result = Optional.of(weight != 1);
+            results.putAll(backbone.compute(solver, candidates, width));
         } catch (TimeoutException t) {
             t.printStackTrace();
         }
-        if (atMostConstraint != null) {
-            solver.removeConstr(atMostConstraint);
-        }
-        if (atLeastConstraint != null) {
-            solver.removeConstr(atLeastConstraint);
+        trace.addSatCalls(backbone.getSatCalls());
+
+        if (seaCell != null && results.containsKey(seaCell)) {
+            boolean isMine = results.get(seaCell);
+            for (Cell c : seaCells) {
+                results.put(c, isMine);
+            }
         }
+        return results;
+    }
+
+    /**
+     * Read the land, shore and sea cells from the frontier of the game instead
+     * of scanning the board on every call.
+     */
+    public void setFrontier(Frontier frontier) {
+        this.frontier = Optional.of(frontier);
+    }
+
+    /**
+     * Set the pool the frontier components are solved on, the common pool is
+     * used by default.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Release the underlying solver and stop listening to the game, should be
+     * called once the game is finished with.
+     */
+    @Override
+    public synchronized void reset() {
+        session.close();
+    }
+
+    private List<Cell> getSeaCells() {
+        return frontier.map(Frontier::getSeaCells).orElseGet(() -> SolverUtil.getSeaCells(cells));
+    }
 
-        return result;
+    private List<FrontierComponent> getFrontierComponents() {
+        return frontier.map(f -> SolverUtil.getFrontierComponents(cells, f))
+                .orElseGet(() -> SolverUtil.getFrontierComponents(cells));
     }
 }
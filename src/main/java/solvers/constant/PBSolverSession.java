@@ -0,0 +1,192 @@
+package main.java.solvers.constant;
+
+import main.java.game.BoardChangeEvent;
+import main.java.game.BoardChangeListener;
+import main.java.game.Cell;
+import main.java.game.CellState;
+import main.java.game.MineSweeper;
+import main.java.solvers.constraints.PBConstraintGeneratorBoard;
+import main.java.solvers.constraints.PBConstraintGeneratorOpenCells;
+import main.java.solvers.constraints.PBPresolver;
+import org.sat4j.pb.SolverFactory;
+import org.sat4j.pb.core.PBSolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A long lived pseudo-boolean solver bound to the cells of a single game.
+ * <p>
+ * The board constraint is added once, after that only the constraints for
+ * cells that were opened since the last update are added. Open cells never
+ * change once they are open so the solver keeps everything it has learnt
+ * (learnt clauses, variable activity) between moves.
+ * <p>
+ * When it listens to a game, the newly opened cells are taken from the change
+ * events of the game instead of found by scanning the board.
+ * <p>
+ * Constraints go through a presolver that stays with the solver, so the open
+ * cells and the cells they force are substituted out before the solver sees
+ * them.
+ */
+public class PBSolverSession implements BoardChangeListener {
+
+    // Upper bound of learnt clauses kept by the solver. Learnt clauses derived
+    // from the board constraint are rarely useful again, letting them pile up
+    // between moves makes every propagation slower.
+    private static final int MAX_LEARNT_CLAUSES = 100;
+
+    private final Cell[][] cells;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final PBConstraintGeneratorOpenCells openCellsGenerator;
+    private final PBPresolver presolver;
+    private final boolean[][] encoded;  // open cells that already have constraints in the solver
+    private final byte[][] encodedNumbers;  // the numbers the open cells were encoded with
+    private final List<Cell> encodedCells;
+    private final Queue<Cell> openedCells;  // cells opened since the last update, when listening
+    private Optional<MineSweeper> game = Optional.empty();  // the game listened to
+    private boolean listening;
+    private int lastUpdateConstraints;
+    private PBSolver solver;
+
+    public PBSolverSession(Cell[][] cells, int width, int height, int mines) {
+        this.cells = cells;
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.presolver = new PBPresolver();
+        this.openCellsGenerator = new PBConstraintGeneratorOpenCells();
+        this.openCellsGenerator.setPresolver(presolver);
+        this.encoded = new boolean[width][height];
+        this.encodedNumbers = new byte[width][height];
+        this.encodedCells = new ArrayList<>();
+        this.openedCells = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Take the opened cells from the change events of the game from now on.
+     */
+    public void listenTo(MineSweeper game) {
+        listening = true;
+        this.game = Optional.of(game);
+        game.addBoardChangeListener(this);
+    }
+
+    @Override
+    public void boardChanged(BoardChangeEvent event) {
+        openedCells.addAll(event.getOpenedCells());
+    }
+
+    /**
+     * Bring the solver up to date with the board.
+     *
+     * @return the solver containing the constraints of every open cell.
+     */
+    public PBSolver update() {
+        List<Cell> newlyOpened = new ArrayList<>();
+        if (solver == null || (!listening && !isConsistentWithBoard())) {
+            rebuild();
+            openedCells.clear();
+            findOpenedCells(newlyOpened);
+        } else if (listening) {
+            // open cells never close again, so the events are all that changed
+            for (Cell cell = openedCells.poll(); cell != null; cell = openedCells.poll()) {
+                if (!encoded[cell.getX()][cell.getY()] && cell.getState() == CellState.OPEN) {
+                    newlyOpened.add(cell);
+                }
+            }
+        } else {
+            findOpenedCells(newlyOpened);
+        }
+        openCellsGenerator.generate(solver, cells, width, newlyOpened);
+        int before = presolver.getConstraintCount();
+        presolver.flush(solver);
+        lastUpdateConstraints = presolver.getConstraintCount() - before;
+        for (Cell cell : newlyOpened) {
+            encoded[cell.getX()][cell.getY()] = true;
+            encodedNumbers[cell.getX()][cell.getY()] = (byte) cell.getNumber();
+            encodedCells.add(cell);
+        }
+        return solver;
+    }
+
+    /**
+     * @return the number of constraints the last update added to the solver,
+     * after presolving.
+     */
+    public int getLastUpdateConstraints() {
+        return lastUpdateConstraints;
+    }
+
+    /**
+     * Release the solver and stop listening to the game, for when the session
+     * is no longer used.
+     */
+    public void close() {
+        reset();
+        game.ifPresent(g -> g.removeBoardChangeListener(this));
+        game = Optional.empty();
+        listening = false;
+        openedCells.clear();
+    }
+
+    /**
+     * Release the solver, the next update will start from an empty solver.
+     */
+    public void reset() {
+        if (solver != null) {
+            // need to make sure that solver will get garbage collected
+            // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+            solver.reset();
+            solver = null;
+        }
+        presolver.reset();
+        for (Cell cell : encodedCells) {
+            encoded[cell.getX()][cell.getY()] = false;
+        }
+        encodedCells.clear();
+    }
+
+    private void findOpenedCells(List<Cell> newlyOpened) {
+        for (int i = 0; i < width; i++) {
+            for (int j = 0; j < height; j++) {
+                if (!encoded[i][j] && cells[i][j].getState() == CellState.OPEN) {
+                    newlyOpened.add(cells[i][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start a new solver, the board constraint is flushed with the open cells.
+     */
+    private void rebuild() {
+        reset();
+        solver = SolverFactory.newDefault();
+        solver.setLearnedConstraintsDeletionStrategy(solver.fixedSize(MAX_LEARNT_CLAUSES));
+        var boardGenerator = new PBConstraintGeneratorBoard();
+        boardGenerator.setPresolver(presolver);
+        boardGenerator.generate(solver, cells, width, height, mines);
+    }
+
+    /**
+     * Constraints can only be added, so if a cell that has been encoded is no
+     * longer open, or the cells hold a different position where it has another
+     * number, the solver can not be reused.
+     */
+    private boolean isConsistentWithBoard() {
+        for (Cell cell : encodedCells) {
+            Cell current = cells[cell.getX()][cell.getY()];
+            if (current.getState() != CellState.OPEN
+                    || current.getNumber() != encodedNumbers[cell.getX()][cell.getY()]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -2,6 +2,7 @@ package main.java.solvers.constant;
 
 import main.java.game.Cell;
 import main.java.game.CellState;
+import main.java.game.NeighbourIndex;
 import main.java.solvers.SolverUtil;
 
 import java.util.*;
@@ -16,9 +17,11 @@ import java.util.stream.Collectors;
  */
 public class SinglePointMineSolver implements IConstantMineSolver {
     private final Cell[][] cells;
+    private final NeighbourIndex neighbourIndex;
 
     public SinglePointMineSolver(Cell[][] cells, int width, int height, int mines) {
         this.cells = cells;
+        this.neighbourIndex = NeighbourIndex.of(width, height);
     }
 
     public Map<Cell, Boolean> getKnownCells() {
@@ -57,25 +60,30 @@ public class SinglePointMineSolver implements IConstantMineSolver {
     private List<Cell> getNeighbouringClosedCells(List<Cell> knownCells) {
         Set<Cell> safeCells = new HashSet<>(); // filter out duplicates
         for (Cell cell : knownCells) {
-            List<Cell> closedNeighbours = SolverUtil.getNeighbours(cells, cell.getX(), cell.getY()).stream()
-                    .filter(c -> c.getState() != CellState.OPEN)
-                    .collect(Collectors.toList());
-
-            safeCells.addAll(closedNeighbours);
+            int i = neighbourIndex.index(cell.getX(), cell.getY());
+            for (int k = neighbourIndex.start(i); k < neighbourIndex.end(i); k++) {
+                Cell c = neighbourIndex.getCell(cells, neighbourIndex.neighbour(i, k));
+                if (c.getState() != CellState.OPEN) {
+                    safeCells.add(c);
+                }
+            }
         }
         return new ArrayList<>(safeCells);
     }
 
     private boolean hasSinglePointSafePattern(Cell cell, Set<Cell> knownMines) {
-        List<Cell> neighbours = SolverUtil.getNeighbours(cells, cell.getX(), cell.getY());
-        int numberOfKnownMines = (int) neighbours.stream().filter(knownMines::contains).count();
+        int i = neighbourIndex.index(cell.getX(), cell.getY());
+        int numberOfKnownMines = 0;
+        for (int k = neighbourIndex.start(i); k < neighbourIndex.end(i); k++) {
+            if (knownMines.contains(neighbourIndex.getCell(cells, neighbourIndex.neighbour(i, k)))) {
+                numberOfKnownMines++;
+            }
+        }
         return cell.getNumber() == numberOfKnownMines;
     }
 
     private boolean hasSinglePointMinePattern(Cell cell) {
-        int numberOfClosedNeighbouringCells = (int) SolverUtil.getNeighbours(cells, cell.getX(), cell.getY()).stream()
-                .filter(c -> c.getState() != CellState.OPEN)
-                .count();
+        int numberOfClosedNeighbouringCells = neighbourIndex.countUnopenedNeighbours(cells, cell.getX(), cell.getY());
         return cell.getNumber() == numberOfClosedNeighbouringCells;
     }
 }
\ No newline at end of file
@@ -1,75 +1,88 @@
 package main.java.solvers.constraints;
 
-import main.java.solvers.SolverUtil;
 import org.sat4j.pb.IPBSolver;
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.IVecInt;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.time.LocalDateTime;
 import java.util.Optional;
 
 public abstract class AbstractConstraintGenerator implements IPBConstraintGenerator {
 
-    private final String LOG_ENV_NAME = "CONSTRAINT_LOG";
-    private final boolean DO_LOG = System.getenv(LOG_ENV_NAME) != null && System.getenv(LOG_ENV_NAME).equalsIgnoreCase("verbose");
-    private final String LOG_FILE_NAME = "constraints.log";
+    private final Optional<ConstraintLog> log = ConstraintLog.get();
+    private int constraints;
+    private Optional<PBPresolver> presolver = Optional.empty();
+    private Optional<OPBInstance> export = Optional.empty();
 
-    private void writeLog(IVecInt literals, IVecInt coefficients, String comparator, int degree) {
-        if (!DO_LOG) {
-            return;
-        }
+    /**
+     * @return the number of constraints this generator has added to solvers, an
+     * exactly constraint counts as two.
+     */
+    public int getConstraintCount() {
+        return constraints;
+    }
 
-        try(FileWriter fw = new FileWriter(LOG_FILE_NAME, true);
-            BufferedWriter bw = new BufferedWriter(fw);
-            PrintWriter out = new PrintWriter(bw))
-        {
-            StringBuilder sb = new StringBuilder();
-            sb.append(LocalDateTime.now()).append(": ");
-            for (int i = 0; i < literals.size(); i++) {
-                int lit = literals.get(i);
-                int coeff = coefficients.get(i);
-                sb.append(coeff).append("x").append(lit).append(" ");
-            }
-            sb.append(comparator).append(" ");
-            sb.append(degree);
-            out.println(sb);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    /**
+     * Give the constraints to a presolver instead of the solver, the solver
+     * only gets them when the presolver is flushed.
+     */
+    public void setPresolver(PBPresolver presolver) {
+        this.presolver = Optional.of(presolver);
+    }
+
+    /**
+     * Keep a copy of every constraint in an instance that can be written out,
+     * as it is generated, before any presolving.
+     */
+    public void setExport(OPBInstance export) {
+        this.export = Optional.of(export);
     }
 
     protected void addExactly(IPBSolver solver, IVecInt literals, IVecInt coefficients, int degree) {
+        constraints += 2;
+        log.ifPresent(l -> l.log(literals, coefficients, ConstraintLog.EXACTLY, degree));
+        export.ifPresent(e -> e.addExactly(literals, coefficients, degree));
+        if (presolver.isPresent()) {
+            presolver.get().addExactly(literals, coefficients, degree);
+            return;
+        }
         try {
             solver.addAtLeast(literals, coefficients, degree);
             solver.addAtMost(literals, coefficients, degree);
         } catch (ContradictionException e) {
             solver.reset();
         }
-        writeLog(literals, coefficients, "=", degree);
     }
 
     protected void addAtLeast(IPBSolver solver, IVecInt literals, IVecInt coefficients, int degree) {
+        constraints++;
+        log.ifPresent(l -> l.log(literals, coefficients, ConstraintLog.AT_LEAST, degree));
+        export.ifPresent(e -> e.addAtLeast(literals, coefficients, degree));
+        if (presolver.isPresent()) {
+            presolver.get().addAtLeast(literals, coefficients, degree);
+            return;
+        }
         try {
             solver.addAtLeast(literals, coefficients, degree);
         } catch (ContradictionException e) {
             solver.reset();
             e.printStackTrace();
         }
-        writeLog(literals, coefficients, ">=", degree);
     }
 
     protected void addAtMost(IPBSolver solver, IVecInt literals, IVecInt coefficients, int degree) {
+        constraints++;
+        log.ifPresent(l -> l.log(literals, coefficients, ConstraintLog.AT_MOST, degree));
+        export.ifPresent(e -> e.addAtMost(literals, coefficients, degree));
+        if (presolver.isPresent()) {
+            presolver.get().addAtMost(literals, coefficients, degree);
+            return;
+        }
         try {
             solver.addAtMost(literals, coefficients, degree);
         } catch (ContradictionException e) {
             solver.reset();
             e.printStackTrace();
         }
-        writeLog(literals, coefficients, "<=", degree);
     }
 
 }
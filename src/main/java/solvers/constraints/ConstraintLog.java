@@ -0,0 +1,274 @@
+package main.java.solvers.constraints;
+
+import org.sat4j.specs.IVecInt;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs every constraint the generators add, turned on with the CONSTRAINT_LOG
+ * environment variable: "verbose" writes lines of text to constraints.log,
+ * "binary" writes records to constraints.bin.
+ * <p>
+ * The generators only copy the constraint into a bounded queue, a single
+ * background thread formats it and writes it to a file that stays open. If the
+ * writer falls behind the constraints are dropped instead of slowing the
+ * solver down, the number dropped is written to the log when it catches up.
+ * <p>
+ * Both logs are appended to by every run. A binary log starts with the bytes
+ * "PBCL" and a version int, written when the file is created, then each record
+ * is the time in epoch milliseconds (long), the comparator (byte, 0 for =, 1
+ * for &gt;=, 2 for &lt;=), the degree (int), the number of terms (int) and the
+ * literal and coefficient of each term (int, int), all big-endian. A dropped
+ * record is a time, the comparator -1 and the number dropped (long).
+ */
+public class ConstraintLog {
+
+    public static final byte EXACTLY = 0;
+    public static final byte AT_LEAST = 1;
+    public static final byte AT_MOST = 2;
+    private static final byte DROPPED = -1;
+
+    private static final String LOG_ENV_NAME = "CONSTRAINT_LOG";
+    private static final String TEXT_FILE_NAME = "constraints.log";
+    private static final String BINARY_FILE_NAME = "constraints.bin";
+    private static final int VERSION = 1;
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String[] COMPARATORS = {"=", ">=", "<="};
+
+    private static final Optional<ConstraintLog> LOG = open(System.getenv(LOG_ENV_NAME));
+
+    private final BlockingQueue<Record> queue;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean binary;
+    private final AtomicLong dropped;
+    private final Thread writer;
+    private volatile boolean closed;
+
+    private ConstraintLog(FileChannel channel, boolean binary) {
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.binary = binary;
+        this.dropped = new AtomicLong();
+        this.writer = new Thread(this::run, "constraint-log");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * @return the log set up by the environment, empty if constraints are not
+     * logged.
+     */
+    public static Optional<ConstraintLog> get() {
+        return LOG;
+    }
+
+    private static Optional<ConstraintLog> open(String mode) {
+        if (mode == null) {
+            return Optional.empty();
+        }
+        boolean binary;
+        if (mode.equalsIgnoreCase("verbose")) {
+            binary = false;
+        } else if (mode.equalsIgnoreCase("binary")) {
+            binary = true;
+        } else {
+            return Optional.empty();
+        }
+        try {
+            var channel = FileChannel.open(Paths.get(binary ? BINARY_FILE_NAME : TEXT_FILE_NAME),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            var log = new ConstraintLog(channel, binary);
+            // runs append to the same file, the header only starts a new one
+            if (binary && channel.size() == 0) {
+                log.buffer.put(new byte[]{'P', 'B', 'C', 'L'}).putInt(VERSION);
+            }
+            log.writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(log::close));
+            return Optional.of(log);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Queue a constraint to be written, the literals and coefficients are
+     * copied so they can be reused straight away.
+     *
+     * @param comparator one of {@link #EXACTLY}, {@link #AT_LEAST} or {@link #AT_MOST}.
+     */
+    public void log(IVecInt literals, IVecInt coefficients, byte comparator, int degree) {
+        int[] lits = new int[literals.size()];
+        int[] coeffs = new int[lits.length];
+        for (int i = 0; i < lits.length; i++) {
+            lits[i] = literals.get(i);
+            coeffs[i] = coefficients.get(i);
+        }
+        var record = new Record(System.currentTimeMillis(), comparator, degree, lits, coeffs);
+        if (closed || !queue.offer(record)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Write everything queued so far and close the file, constraints logged
+     * after this are dropped.
+     */
+    public void close() {
+        // not interrupted, that would close the channel in the middle of a write
+        closed = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                Record record;
+                try {
+                    record = queue.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (record == null) {
+                    // nothing is coming, so the buffer goes out now
+                    flush();
+                    continue;
+                }
+                write(record);
+                for (record = queue.poll(); record != null; record = queue.poll()) {
+                    write(record);
+                }
+                writeDropped();
+            }
+            for (Record record = queue.poll(); record != null; record = queue.poll()) {
+                write(record);
+            }
+            writeDropped();
+            flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void writeDropped() throws IOException {
+        long count = dropped.getAndSet(0);
+        if (count == 0) {
+            return;
+        }
+        long time = System.currentTimeMillis();
+        if (binary) {
+            ensureRemaining(Long.BYTES + 1 + Long.BYTES);
+            buffer.putLong(time).put(DROPPED).putLong(count);
+        } else {
+            writeText(formatTime(time) + ": dropped " + count + " constraints\n");
+        }
+    }
+
+    private void write(Record record) throws IOException {
+        if (binary) {
+            int terms = record.literals.length;
+            int size = Long.BYTES + 1 + 2 * Integer.BYTES + terms * 2 * Integer.BYTES;
+            if (size > buffer.capacity()) {
+                // larger than the buffer, e.g. the board constraint of a huge board
+                flush();
+                ByteBuffer large = ByteBuffer.allocate(size);
+                putRecord(large, record);
+                large.flip();
+                while (large.hasRemaining()) {
+                    channel.write(large);
+                }
+                return;
+            }
+            ensureRemaining(size);
+            putRecord(buffer, record);
+        } else {
+            StringBuilder sb = new StringBuilder();
+            sb.append(formatTime(record.time)).append(": ");
+            for (int i = 0; i < record.literals.length; i++) {
+                sb.append(record.coefficients[i]).append("x").append(record.literals[i]).append(" ");
+            }
+            sb.append(COMPARATORS[record.comparator]).append(" ");
+            sb.append(record.degree).append('\n');
+            writeText(sb.toString());
+        }
+    }
+
+    private static void putRecord(ByteBuffer target, Record record) {
+        target.putLong(record.time).put(record.comparator).putInt(record.degree).putInt(record.literals.length);
+        for (int i = 0; i < record.literals.length; i++) {
+            target.putInt(record.literals[i]).putInt(record.coefficients[i]);
+        }
+    }
+
+    private void writeText(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void ensureRemaining(int size) throws IOException {
+        if (buffer.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static String formatTime(long time) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault()).toString();
+    }
+
+    private static class Record {
+        private final long time;
+        private final byte comparator;
+        private final int degree;
+        private final int[] literals;
+        private final int[] coefficients;
+
+        private Record(long time, byte comparator, int degree, int[] literals, int[] coefficients) {
+            this.time = time;
+            this.comparator = comparator;
+            this.degree = degree;
+            this.literals = literals;
+            this.coefficients = coefficients;
+        }
+    }
+}
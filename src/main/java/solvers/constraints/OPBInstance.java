@@ -0,0 +1,313 @@
+package main.java.solvers.constraints;
+
+import main.java.game.Cell;
+import main.java.game.CellState;
+import main.java.solvers.SolverUtil;
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.pb.SolverFactory;
+import org.sat4j.pb.core.PBSolver;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IVecInt;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A board position together with the pseudo-boolean instance the generators
+ * built for it, so slow positions can be saved and solved again offline.
+ * <p>
+ * The file is in the OPB format of the pseudo-boolean competitions. The
+ * position is kept in comment lines that solvers skip:
+ * <pre>
+ * * #variable= 258 #constraint= 41
+ * * position 16 16 40      width, height and mines
+ * * row ??1F2?...           a row of the board from y = 0, ? closed, F flagged, 0-8 open
+ * * cell 3 1 x20           the literal of every cell in the instance, SolverUtil.encodeCellId
+ * * sea 0 x273             the literals counting the sea, SolverUtil.encodeLit
+ * +1 x1 +1 x2 ... = 40 ;
+ * </pre>
+ * At most constraints are written as at least constraints with the
+ * coefficients negated, negative literals as ~x.
+ */
+public class OPBInstance {
+
+    private static final byte EXACTLY = 0;
+    private static final byte AT_LEAST = 1;
+    private static final byte AT_MOST = 2;
+
+    private final Cell[][] cells;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final List<Constraint> constraints;
+
+    public OPBInstance(Cell[][] cells, int width, int height, int mines) {
+        this.cells = cells;
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.constraints = new ArrayList<>();
+    }
+
+    /**
+     * Run the generators of a pipeline over a position and keep what they
+     * build.
+     */
+    public static OPBInstance of(Cell[][] cells, int width, int height, int mines, IPBConstraintGenerator... generators) {
+        var instance = new OPBInstance(cells, width, height, mines);
+        PBSolver solver = SolverFactory.newDefault();
+        try {
+            for (IPBConstraintGenerator generator : generators) {
+                if (generator instanceof AbstractConstraintGenerator) {
+                    ((AbstractConstraintGenerator) generator).setExport(instance);
+                }
+                generator.generate(solver, cells, width, height, mines);
+            }
+        } finally {
+            // need to make sure that solver will get garbage collected
+            // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+            solver.reset();
+        }
+        return instance;
+    }
+
+    public void addExactly(IVecInt literals, IVecInt coefficients, int degree) {
+        constraints.add(Constraint.of(literals, coefficients, EXACTLY, degree));
+    }
+
+    public void addAtLeast(IVecInt literals, IVecInt coefficients, int degree) {
+        constraints.add(Constraint.of(literals, coefficients, AT_LEAST, degree));
+    }
+
+    public void addAtMost(IVecInt literals, IVecInt coefficients, int degree) {
+        constraints.add(Constraint.of(literals, coefficients, AT_MOST, degree));
+    }
+
+    public Cell[][] getCells() {
+        return cells;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getMines() {
+        return mines;
+    }
+
+    public int getConstraintCount() {
+        return constraints.size();
+    }
+
+    /**
+     * Add the constraints of the instance to a solver, as the generators
+     * would have.
+     */
+    public void addTo(IPBSolver solver) throws ContradictionException {
+        for (Constraint constraint : constraints) {
+            // copied, the solver may reorder the vectors it is given
+            IVecInt literals = new VecInt(constraint.literals.clone());
+            IVecInt coefficients = new VecInt(constraint.coefficients.clone());
+            switch (constraint.comparator) {
+                case EXACTLY -> solver.addExactly(literals, coefficients, constraint.degree);
+                case AT_LEAST -> solver.addAtLeast(literals, coefficients, constraint.degree);
+                default -> solver.addAtMost(literals, coefficients, constraint.degree);
+            }
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            write(out);
+        }
+    }
+
+    private void write(PrintWriter out) {
+        int maxVar = 0;
+        boolean[] used = new boolean[1];
+        for (Constraint constraint : constraints) {
+            for (int lit : constraint.literals) {
+                int var = Math.abs(lit);
+                if (var >= used.length) {
+                    used = Arrays.copyOf(used, Math.max(used.length * 2, var + 1));
+                }
+                used[var] = true;
+                maxVar = Math.max(maxVar, var);
+            }
+        }
+        out.println("* #variable= " + maxVar + " #constraint= " + constraints.size());
+        out.println("* position " + width + " " + height + " " + mines);
+        for (int y = 0; y < height; y++) {
+            StringBuilder row = new StringBuilder(width);
+            for (int x = 0; x < width; x++) {
+                Cell cell = cells[x][y];
+                switch (cell.getState()) {
+                    case OPEN -> row.append((char) ('0' + cell.getNumber()));
+                    case FLAGGED -> row.append('F');
+                    default -> row.append('?');
+                }
+            }
+            out.println("* row " + row);
+        }
+        int cellVars = width * height;
+        for (int var = 1; var <= maxVar; var++) {
+            if (!used[var]) {
+                continue;
+            }
+            if (var <= cellVars) {
+                Cell cell = SolverUtil.decodeCellId(cells, var, height, width).orElseThrow();
+                out.println("* cell " + cell.getX() + " " + cell.getY() + " x" + var);
+            } else {
+                out.println("* sea " + (var - SolverUtil.encodeLit(0, height, width)) + " x" + var);
+            }
+        }
+
+        for (Constraint constraint : constraints) {
+            // OPB has no at most, so both sides are negated
+            int sign = constraint.comparator == AT_MOST ? -1 : 1;
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < constraint.literals.length; i++) {
+                int coeff = sign * constraint.coefficients[i];
+                int lit = constraint.literals[i];
+                sb.append(coeff < 0 ? "" : "+").append(coeff).append(' ');
+                sb.append(lit < 0 ? "~x" : "x").append(Math.abs(lit)).append(' ');
+            }
+            sb.append(constraint.comparator == EXACTLY ? "=" : ">=").append(' ');
+            sb.append(sign * constraint.degree).append(" ;");
+            out.println(sb);
+        }
+    }
+
+    /**
+     * Rebuild a position and its instance from a file written by
+     * {@link #write(Path)}. The closed cells of the position have no number.
+     *
+     * @return empty if the file has no position in it.
+     */
+    public static Optional<OPBInstance> read(Path file) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            return read(in);
+        }
+    }
+
+    private static Optional<OPBInstance> read(BufferedReader in) throws IOException {
+        Optional<OPBInstance> instance = Optional.empty();
+        int y = 0;
+        for (String line = in.readLine(); line != null; line = in.readLine()) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] tokens = line.split("\\s+");
+            if (tokens[0].equals("*")) {
+                if (tokens.length == 5 && tokens[1].equals("position")) {
+                    int width = Integer.parseInt(tokens[2]);
+                    int height = Integer.parseInt(tokens[3]);
+                    int mines = Integer.parseInt(tokens[4]);
+                    instance = Optional.of(new OPBInstance(createCells(width, height), width, height, mines));
+                } else if (tokens.length == 3 && tokens[1].equals("row") && instance.isPresent()) {
+                    readRow(instance.get(), tokens[2], y++);
+                }
+                continue;
+            }
+            if (instance.isEmpty()) {
+                throw new IOException("Constraint before the position: " + line);
+            }
+            instance.get().constraints.add(readConstraint(tokens, line));
+        }
+        return instance;
+    }
+
+    private static Cell[][] createCells(int width, int height) {
+        Cell[][] cells = new Cell[width][height];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                cells[x][y] = new Cell(x, y);
+            }
+        }
+        return cells;
+    }
+
+    private static void readRow(OPBInstance instance, String row, int y) throws IOException {
+        if (y >= instance.height || row.length() != instance.width) {
+            throw new IOException("Row " + y + " does not fit the board: " + row);
+        }
+        for (int x = 0; x < instance.width; x++) {
+            Cell cell = instance.cells[x][y];
+            char c = row.charAt(x);
+            if (c == 'F') {
+                cell.setState(CellState.FLAGGED);
+            } else if (c >= '0' && c <= '8') {
+                cell.setState(CellState.OPEN);
+                cell.setNumber(c - '0');
+            }
+        }
+    }
+
+    /**
+     * Read a linear constraint, the negative coefficients OPB uses for at most
+     * constraints are turned back into positive ones on the negated literal.
+     */
+    private static Constraint readConstraint(String[] tokens, String line) throws IOException {
+        IVecInt literals = new VecInt();
+        IVecInt coefficients = new VecInt();
+        int i = 0;
+        int shift = 0;
+        while (i + 1 < tokens.length && !tokens[i].equals(">=") && !tokens[i].equals("=")) {
+            int coeff = Integer.parseInt(tokens[i].startsWith("+") ? tokens[i].substring(1) : tokens[i]);
+            String literal = tokens[i + 1];
+            int lit = literal.startsWith("~") ? -Integer.parseInt(literal.substring(2)) : Integer.parseInt(literal.substring(1));
+            // c l = -c (not l) + c
+            if (coeff < 0) {
+                lit = -lit;
+                coeff = -coeff;
+                shift += coeff;
+            }
+            literals.push(lit);
+            coefficients.push(coeff);
+            i += 2;
+        }
+        if (i + 1 >= tokens.length) {
+            throw new IOException("Not a constraint: " + line);
+        }
+        byte comparator = tokens[i].equals("=") ? EXACTLY : AT_LEAST;
+        int degree = Integer.parseInt(tokens[i + 1]) + shift;
+        return Constraint.of(literals, coefficients, comparator, degree);
+    }
+
+    private static class Constraint {
+        private final int[] literals;
+        private final int[] coefficients;
+        private final byte comparator;
+        private final int degree;
+
+        private Constraint(int[] literals, int[] coefficients, byte comparator, int degree) {
+            this.literals = literals;
+            this.coefficients = coefficients;
+            this.comparator = comparator;
+            this.degree = degree;
+        }
+
+        private static Constraint of(IVecInt literals, IVecInt coefficients, byte comparator, int degree) {
+            int[] lits = new int[literals.size()];
+            int[] coeffs = new int[lits.length];
+            for (int i = 0; i < lits.length; i++) {
+                lits[i] = literals.get(i);
+                coeffs[i] = coefficients.get(i);
+            }
+            return new Constraint(lits, coeffs, comparator, degree);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package main.java.solvers.constraints;
+
+import main.java.game.Cell;
+import main.java.game.CellState;
+import main.java.game.NeighbourIndex;
+import main.java.solvers.FrontierComponent;
+import main.java.solvers.SolverUtil;
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.core.PBSolver;
+import org.sat4j.specs.IVecInt;
+
+/**
+ * Generates the constraints of a single frontier component. Only the closed
+ * cells of the component are used as literals, open cells are known to be safe
+ * so they are left out of the sums.
+ */
+public class PBConstraintGeneratorComponent extends AbstractConstraintGenerator {
+
+    private final FrontierComponent component;
+
+    public PBConstraintGeneratorComponent(FrontierComponent component) {
+        this.component = component;
+    }
+
+    @Override
+    public void generate(PBSolver solver, Cell[][] cells, int width, int height, int mines) {
+        IVecInt literals = new VecInt();
+        IVecInt coefficients = new VecInt();
+        NeighbourIndex index = NeighbourIndex.of(width, height);
+
+        // the closed neighbours of every open cell must sum to its number
+        for (Cell cell : component.getOpenCells()) {
+            int i = index.index(cell.getX(), cell.getY());
+            for (int k = index.start(i); k < index.end(i); k++) {
+                Cell c = index.getCell(cells, index.neighbour(i, k));
+                if (c.getState() != CellState.OPEN) {
+                    literals.push(SolverUtil.encodeCellId(c, width));
+                    coefficients.push(1);
+                }
+            }
+            addExactly(solver, literals, coefficients, cell.getNumber());
+            literals.clear();
+            coefficients.clear();
+        }
+    }
+}
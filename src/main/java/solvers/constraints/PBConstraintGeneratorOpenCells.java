@@ -1,22 +1,47 @@
 package main.java.solvers.constraints;
 
+import main.java.game.BoardState;
 import main.java.game.Cell;
+import main.java.game.NeighbourIndex;
 import main.java.solvers.SolverUtil;
 import org.sat4j.core.VecInt;
 import org.sat4j.pb.core.PBSolver;
 import org.sat4j.specs.IVecInt;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public class PBConstraintGeneratorOpenCells extends AbstractConstraintGenerator {
 
+    private final Optional<BoardState> state;
+
+    public PBConstraintGeneratorOpenCells() {
+        this.state = Optional.empty();
+    }
+
+    /**
+     * @param state the open cells are read from it instead of found by copying
+     *              the board.
+     */
+    public PBConstraintGeneratorOpenCells(BoardState state) {
+        this.state = Optional.of(state);
+    }
 
     @Override
     public void generate(PBSolver solver, Cell[][] cells, int width, int height, int mines) {
+        List<Cell> openCells = state.map(s -> SolverUtil.getLandCells(cells, s)).orElseGet(() -> SolverUtil.getLandCells(cells));
+        generate(solver, cells, width, openCells);
+    }
+
+    /**
+     * Only generate the constraints for the given open cells. Used when a solver
+     * is kept between moves and only the newly opened cells need encoding.
+     */
+    public void generate(PBSolver solver, Cell[][] cells, int width, Collection<Cell> openCells) {
         IVecInt literals = new VecInt();
         IVecInt coefficients = new VecInt();
-
-        List<Cell> openCells = SolverUtil.getLandCells(cells);
+        NeighbourIndex index = NeighbourIndex.of(cells);
 
         for (Cell cell : openCells) {
             literals.push(SolverUtil.encodeCellId(cell, width));
@@ -27,16 +52,17 @@ public class PBConstraintGeneratorOpenCells extends AbstractConstraintGenerator
             literals.clear();
             coefficients.clear();
 
-            addSurroundingCellsConstraint(solver, cells, width, literals, coefficients, cell);
+            addSurroundingCellsConstraint(solver, cells, width, index, literals, coefficients, cell);
 
             literals.clear();
             coefficients.clear();
         }
     }
 
-    private void addSurroundingCellsConstraint(PBSolver solver, Cell[][] cells, int width, IVecInt literals, IVecInt coefficients, Cell cell) {
-        List<Cell> neighbours = SolverUtil.getNeighbours(cells, cell.getX(), cell.getY());
-        for (Cell c : neighbours) {
+    private void addSurroundingCellsConstraint(PBSolver solver, Cell[][] cells, int width, NeighbourIndex index, IVecInt literals, IVecInt coefficients, Cell cell) {
+        int i = index.index(cell.getX(), cell.getY());
+        for (int k = index.start(i); k < index.end(i); k++) {
+            Cell c = index.getCell(cells, index.neighbour(i, k));
             literals.push(SolverUtil.encodeCellId(c, width));
             coefficients.push(1);
         }
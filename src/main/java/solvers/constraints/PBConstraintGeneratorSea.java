@@ -1,17 +1,34 @@
 package main.java.solvers.constraints;
 
 import main.java.game.Cell;
+import main.java.game.Frontier;
 import main.java.solvers.SolverUtil;
 import org.sat4j.core.VecInt;
 import org.sat4j.pb.core.PBSolver;
 import org.sat4j.specs.IVecInt;
 
+import java.util.List;
+import java.util.Optional;
+
 public class PBConstraintGeneratorSea extends AbstractConstraintGenerator {
 
+    private final Optional<Frontier> frontier;
+
+    public PBConstraintGeneratorSea() {
+        this.frontier = Optional.empty();
+    }
+
+    /**
+     * @param frontier the shore and sea cells are read from it instead of found
+     *                 by scanning the board.
+     */
+    public PBConstraintGeneratorSea(Frontier frontier) {
+        this.frontier = Optional.of(frontier);
+    }
 
     @Override
     public void generate(PBSolver solver, Cell[][] cells, int width, int height, int mines) {
-        int seaSize = SolverUtil.getSeaCells(cells).size();
+        int seaSize = frontier.map(Frontier::getSeaSize).orElseGet(() -> SolverUtil.getSeaCells(cells).size());
         int noOfLiteralsNeeded = Integer.toBinaryString(seaSize).length();
         IVecInt literals = new VecInt();
         IVecInt coefficients = new VecInt();
@@ -24,7 +41,8 @@ public class PBConstraintGeneratorSea extends AbstractConstraintGenerator {
         }
 
         addAtMost(solver, literals, coefficients, seaSize);
-        for (Cell cell : SolverUtil.getClosedShoreCells(cells)) {
+        List<Cell> shoreCells = frontier.map(Frontier::getClosedShoreCells).orElseGet(() -> SolverUtil.getClosedShoreCells(cells));
+        for (Cell cell : shoreCells) {
             literals.push(SolverUtil.encodeCellId(cell, width));
             coefficients.push(1);
         }
@@ -0,0 +1,435 @@
+package main.java.solvers.constraints;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IVecInt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Sits between the constraint generators and a solver and shrinks what the
+ * generators emit before the solver sees it.
+ * <p>
+ * Constraints are collected until {@link #flush(IPBSolver)}, then:
+ * <ul>
+ *     <li>variables forced by the bounds of a constraint are fixed, which can
+ *     force more (the open cells are fixed safe by their own constraints);</li>
+ *     <li>fixed variables are substituted out of every constraint;</li>
+ *     <li>constraints that hold whatever their variables are are dropped, an
+ *     open cell with no closed neighbour leaves nothing;</li>
+ *     <li>constraints over the same variables are merged into one.</li>
+ * </ul>
+ * A fixed variable is only given to the solver on its own if the solver has
+ * seen it in an earlier flush or if it was derived here, a variable the
+ * generators declared fixed and the solver never saw (an open cell) is left
+ * out completely. The fixed values are kept, so a presolver can stay with a
+ * solver that is added to between moves. A variable in an exactly constraint
+ * only leaves the problem once it is fixed.
+ * <p>
+ * If the constraints contradict each other they are given to the solver as
+ * they are, with the values fixed earlier that they use, so it fails the same
+ * way it would have without presolving.
+ */
+public class PBPresolver {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+
+    private final List<Constraint> pending;
+    private byte[] values;          // values[v], the value v is fixed to
+    private boolean[] declared;     // declared[v], v was fixed by a constraint of its own
+    private boolean[] seen;         // seen[v], the solver has v in a constraint
+    private int constraints;
+
+    public PBPresolver() {
+        this.pending = new ArrayList<>();
+        this.values = new byte[64];
+        this.declared = new boolean[64];
+        this.seen = new boolean[64];
+    }
+
+    public void addExactly(IVecInt literals, IVecInt coefficients, int degree) {
+        pending.add(Constraint.of(literals, coefficients, degree, degree));
+    }
+
+    public void addAtLeast(IVecInt literals, IVecInt coefficients, int degree) {
+        pending.add(Constraint.of(literals, coefficients, degree, Long.MAX_VALUE));
+    }
+
+    public void addAtMost(IVecInt literals, IVecInt coefficients, int degree) {
+        pending.add(Constraint.of(literals, coefficients, Long.MIN_VALUE, degree));
+    }
+
+    /**
+     * @return the number of constraints given to solvers so far, an exactly
+     * constraint counts as two.
+     */
+    public int getConstraintCount() {
+        return constraints;
+    }
+
+    /**
+     * @return true if the variable has been fixed, to a mine or safe.
+     */
+    public boolean isFixed(int var) {
+        return var < values.length && values[var] != UNKNOWN;
+    }
+
+    /**
+     * @return the value of a fixed variable.
+     */
+    public boolean getValue(int var) {
+        return values[var] == TRUE;
+    }
+
+    /**
+     * Forget every fixed value, for when the solver it was used with is
+     * replaced.
+     */
+    public void reset() {
+        pending.clear();
+        Arrays.fill(values, UNKNOWN);
+        Arrays.fill(declared, false);
+        Arrays.fill(seen, false);
+    }
+
+    /**
+     * Presolve the constraints collected since the last flush and add what is
+     * left of them to the solver.
+     */
+    public void flush(IPBSolver solver) {
+        for (Constraint constraint : pending) {
+            ensureCapacity(constraint.maxVar());
+            if (constraint.vars.length == 1 && constraint.lower == constraint.upper) {
+                declared[constraint.vars[0]] = true;
+            }
+        }
+        List<Integer> fixed = new ArrayList<>();
+        Optional<List<Constraint>> presolved = propagate(fixed) ? merge(simplify()) : Optional.empty();
+        if (presolved.isPresent()) {
+            for (Constraint constraint : presolved.get()) {
+                emit(solver, constraint);
+            }
+            for (int var : fixed) {
+                if (seen[var] || !declared[var]) {
+                    emit(solver, Constraint.unit(var, values[var] == TRUE));
+                }
+            }
+        } else {
+            for (int var : fixed) {
+                values[var] = UNKNOWN;
+            }
+            // the values fixed earlier are part of the contradiction too
+            for (Constraint constraint : pending) {
+                for (int var : constraint.vars) {
+                    if (values[var] != UNKNOWN && !seen[var]) {
+                        emit(solver, Constraint.unit(var, values[var] == TRUE));
+                    }
+                }
+            }
+            for (Constraint constraint : pending) {
+                emit(solver, constraint);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Fix every variable whose value is forced by the bounds of a constraint,
+     * until nothing more is forced.
+     *
+     * @param fixed the variables fixed, in order.
+     * @return false if a constraint can not be met.
+     */
+    private boolean propagate(List<Integer> fixed) {
+        int maxVar = 0;
+        for (Constraint constraint : pending) {
+            maxVar = Math.max(maxVar, constraint.maxVar());
+        }
+        // occurrences[v], the pending constraints v is in
+        List<List<Integer>> occurrences = new ArrayList<>(maxVar + 1);
+        for (int v = 0; v <= maxVar; v++) {
+            occurrences.add(null);
+        }
+        for (int c = 0; c < pending.size(); c++) {
+            for (int var : pending.get(c).vars) {
+                if (occurrences.get(var) == null) {
+                    occurrences.set(var, new ArrayList<>(4));
+                }
+                occurrences.get(var).add(c);
+            }
+        }
+
+        Deque<Integer> queue = new ArrayDeque<>(pending.size());
+        boolean[] queued = new boolean[pending.size()];
+        for (int c = 0; c < pending.size(); c++) {
+            queue.add(c);
+            queued[c] = true;
+        }
+        while (!queue.isEmpty()) {
+            int c = queue.poll();
+            queued[c] = false;
+
+            Constraint constraint = pending.get(c);
+            long min = 0;
+            long max = 0;
+            for (int i = 0; i < constraint.vars.length; i++) {
+                long coeff = constraint.coeffs[i];
+                byte value = values[constraint.vars[i]];
+                if (value == TRUE) {
+                    min += coeff;
+                    max += coeff;
+                } else if (value == UNKNOWN) {
+                    min += Math.min(coeff, 0);
+                    max += Math.max(coeff, 0);
+                }
+            }
+            if (max < constraint.lower || min > constraint.upper) {
+                return false;
+            }
+            for (int i = 0; i < constraint.vars.length; i++) {
+                int var = constraint.vars[i];
+                if (values[var] != UNKNOWN) {
+                    continue;
+                }
+                long coeff = constraint.coeffs[i];
+                // the bounds of the sum with the variable false, and true
+                long minFalse = min - Math.min(coeff, 0);
+                long maxFalse = max - Math.max(coeff, 0);
+                boolean falseFails = maxFalse < constraint.lower || minFalse > constraint.upper;
+                boolean trueFails = maxFalse + coeff < constraint.lower || minFalse + coeff > constraint.upper;
+                if (falseFails && trueFails) {
+                    return false;
+                }
+                if (!falseFails && !trueFails) {
+                    continue;
+                }
+                values[var] = falseFails ? TRUE : FALSE;
+                fixed.add(var);
+                // the bounds of this constraint change too, so it is looked at again
+                for (int other : occurrences.get(var)) {
+                    if (!queued[other]) {
+                        queue.add(other);
+                        queued[other] = true;
+                    }
+                }
+                if (falseFails) {
+                    min = minFalse + coeff;
+                    max = maxFalse + coeff;
+                } else {
+                    min = minFalse;
+                    max = maxFalse;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Substitute the fixed variables out of the pending constraints and drop
+     * the bounds that always hold.
+     *
+     * @return the constraints that still say something.
+     */
+    private List<Constraint> simplify() {
+        List<Constraint> simplified = new ArrayList<>(pending.size());
+        for (Constraint constraint : pending) {
+            int free = 0;
+            long fixedSum = 0;
+            for (int i = 0; i < constraint.vars.length; i++) {
+                byte value = values[constraint.vars[i]];
+                if (value == UNKNOWN) {
+                    free++;
+                } else if (value == TRUE) {
+                    fixedSum += constraint.coeffs[i];
+                }
+            }
+            if (free == 0) {
+                continue;
+            }
+
+            // free variables sorted, so constraints over the same ones compare equal
+            long[] terms = new long[free];
+            int k = 0;
+            for (int i = 0; i < constraint.vars.length; i++) {
+                if (values[constraint.vars[i]] == UNKNOWN) {
+                    terms[k++] = ((long) constraint.vars[i] << 32) | (constraint.coeffs[i] & 0xFFFFFFFFL);
+                }
+            }
+            Arrays.sort(terms);
+            int[] vars = new int[free];
+            long[] coeffs = new long[free];
+            long min = 0;
+            long max = 0;
+            for (int i = 0; i < free; i++) {
+                vars[i] = (int) (terms[i] >>> 32);
+                coeffs[i] = (int) terms[i];
+                min += Math.min(coeffs[i], 0);
+                max += Math.max(coeffs[i], 0);
+            }
+
+            long lower = constraint.lower == Long.MIN_VALUE ? Long.MIN_VALUE : constraint.lower - fixedSum;
+            long upper = constraint.upper == Long.MAX_VALUE ? Long.MAX_VALUE : constraint.upper - fixedSum;
+            if (lower <= min) {
+                lower = Long.MIN_VALUE;
+            }
+            if (upper >= max) {
+                upper = Long.MAX_VALUE;
+            }
+            if (lower != Long.MIN_VALUE || upper != Long.MAX_VALUE) {
+                simplified.add(new Constraint(vars, coeffs, lower, upper));
+            }
+        }
+        return simplified;
+    }
+
+    /**
+     * @return the constraints with the ones over the same variables and
+     * coefficients merged, keeping the tightest bounds of each. Empty if the
+     * bounds of merged constraints do not meet.
+     */
+    private Optional<List<Constraint>> merge(List<Constraint> simplified) {
+        Map<Constraint, Constraint> byScope = new HashMap<>();
+        List<Constraint> merged = new ArrayList<>(simplified.size());
+        for (Constraint constraint : simplified) {
+            Constraint existing = byScope.get(constraint);
+            if (existing == null) {
+                byScope.put(constraint, constraint);
+                merged.add(constraint);
+            } else {
+                existing.lower = Math.max(existing.lower, constraint.lower);
+                existing.upper = Math.min(existing.upper, constraint.upper);
+                if (existing.lower > existing.upper) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.of(merged);
+    }
+
+    private void emit(IPBSolver solver, Constraint constraint) {
+        IVecInt literals = new VecInt(constraint.vars.length);
+        IVecInt coefficients = new VecInt(constraint.vars.length);
+        long shift = 0;
+        for (int i = 0; i < constraint.vars.length; i++) {
+            long coeff = constraint.coeffs[i];
+            // c x = -c (not x) + c, so negative coefficients become negated literals
+            if (coeff < 0) {
+                literals.push(-constraint.vars[i]);
+                coefficients.push((int) -coeff);
+                shift -= coeff;
+            } else {
+                literals.push(constraint.vars[i]);
+                coefficients.push((int) coeff);
+            }
+            seen[constraint.vars[i]] = true;
+        }
+        try {
+            if (constraint.lower == constraint.upper) {
+                constraints += 2;
+                solver.addExactly(literals, coefficients, (int) (constraint.lower + shift));
+                return;
+            }
+            if (constraint.lower != Long.MIN_VALUE) {
+                constraints++;
+                solver.addAtLeast(literals, coefficients, (int) (constraint.lower + shift));
+            }
+            if (constraint.upper != Long.MAX_VALUE) {
+                constraints++;
+                solver.addAtMost(literals, coefficients, (int) (constraint.upper + shift));
+            }
+        } catch (ContradictionException e) {
+            solver.reset();
+        }
+    }
+
+    private void ensureCapacity(int var) {
+        if (var >= values.length) {
+            int capacity = Math.max(values.length * 2, var + 1);
+            values = Arrays.copyOf(values, capacity);
+            declared = Arrays.copyOf(declared, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+    }
+
+    /**
+     * A linear constraint lower &lt;= sum of coeffs[i] * vars[i] &lt;= upper over
+     * positive variables, an unbounded side is Long.MIN_VALUE or MAX_VALUE.
+     * Two constraints are equal if they have the same variables and
+     * coefficients, whatever their bounds.
+     */
+    private static class Constraint {
+        private final int[] vars;
+        private final long[] coeffs;
+        private long lower;
+        private long upper;
+
+        private Constraint(int[] vars, long[] coeffs, long lower, long upper) {
+            this.vars = vars;
+            this.coeffs = coeffs;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        private static Constraint of(IVecInt literals, IVecInt coefficients, long lower, long upper) {
+            int[] vars = new int[literals.size()];
+            long[] coeffs = new long[literals.size()];
+            long shift = 0;
+            for (int i = 0; i < vars.length; i++) {
+                int lit = literals.get(i);
+                long coeff = coefficients.get(i);
+                // c (not x) = c - c x
+                if (lit < 0) {
+                    vars[i] = -lit;
+                    coeffs[i] = -coeff;
+                    shift += coeff;
+                } else {
+                    vars[i] = lit;
+                    coeffs[i] = coeff;
+                }
+            }
+            return new Constraint(vars, coeffs,
+                    lower == Long.MIN_VALUE ? lower : lower - shift,
+                    upper == Long.MAX_VALUE ? upper : upper - shift);
+        }
+
+        private static Constraint unit(int var, boolean value) {
+            int degree = value ? 1 : 0;
+            return new Constraint(new int[]{var}, new long[]{1}, degree, degree);
+        }
+
+        private int maxVar() {
+            int max = 0;
+            for (int var : vars) {
+                max = Math.max(max, var);
+            }
+            return max;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Constraint)) {
+                return false;
+            }
+            Constraint other = (Constraint) o;
+            return Arrays.equals(vars, other.vars) && Arrays.equals(coeffs, other.coeffs);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(vars) + Arrays.hashCode(coeffs);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package main.java.solvers.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of the values recorded over the last minute, safe to record
+ * into from any thread without locking.
+ * <p>
+ * Values go into power of two buckets, so a percentile is accurate to within
+ * a factor of two, which is plenty to see a regression. The minute is split
+ * into slices, each with its own buckets; a slice is cleared when it comes
+ * round again, so old values drop out without a background thread.
+ */
+public class RollingHistogram {
+
+    private static final int BUCKETS = 64;
+    private static final int SLICES = 6;
+    private static final long SLICE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final AtomicLongArray counts;   // counts[slice * BUCKETS + bucket]
+    private final AtomicLongArray epochs;   // epochs[slice], the slice of time the counts are for
+    private final AtomicLongArray maxima;   // maxima[slice], the largest value recorded in the slice
+
+    public RollingHistogram() {
+        this.counts = new AtomicLongArray(SLICES * BUCKETS);
+        this.epochs = new AtomicLongArray(SLICES);
+        this.maxima = new AtomicLongArray(SLICES);
+        reset();
+    }
+
+    public void record(long value) {
+        long epoch = System.nanoTime() / SLICE_NANOS;
+        int slice = (int) Math.floorMod(epoch, (long) SLICES);
+        long current = epochs.get(slice);
+        if (current != epoch && epochs.compareAndSet(slice, current, epoch)) {
+            // a value recorded while the slice is cleared may be lost, that is fine for metrics
+            for (int b = 0; b < BUCKETS; b++) {
+                counts.set(slice * BUCKETS + b, 0);
+            }
+            maxima.set(slice, 0);
+        }
+        counts.incrementAndGet(slice * BUCKETS + bucket(value));
+        maxima.accumulateAndGet(slice, value, Math::max);
+    }
+
+    /**
+     * @return the number of values recorded in the last minute.
+     */
+    public long getCount() {
+        long[] buckets = collect();
+        long count = 0;
+        for (long c : buckets) {
+            count += c;
+        }
+        return count;
+    }
+
+    /**
+     * @param percentile in (0, 100].
+     * @return the upper bound of the bucket holding the percentile of the last
+     * minute, 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] buckets = collect();
+        long count = 0;
+        for (long c : buckets) {
+            count += c;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets[b];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(b), getMax());
+            }
+        }
+        return 0;
+    }
+
+    public long getMax() {
+        long epoch = System.nanoTime() / SLICE_NANOS;
+        long max = 0;
+        for (int slice = 0; slice < SLICES; slice++) {
+            if (epochs.get(slice) > epoch - SLICES) {
+                max = Math.max(max, maxima.get(slice));
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        for (int slice = 0; slice < SLICES; slice++) {
+            epochs.set(slice, Long.MIN_VALUE);
+        }
+    }
+
+    private long[] collect() {
+        long epoch = System.nanoTime() / SLICE_NANOS;
+        long[] buckets = new long[BUCKETS];
+        for (int slice = 0; slice < SLICES; slice++) {
+            if (epochs.get(slice) > epoch - SLICES) {
+                for (int b = 0; b < BUCKETS; b++) {
+                    buckets[b] += counts.get(slice * BUCKETS + b);
+                }
+            }
+        }
+        return buckets;
+    }
+
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value) - 1;
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket >= 62 ? Long.MAX_VALUE : (2L << bucket) - 1;
+    }
+}
@@ -0,0 +1,70 @@
+package main.java.solvers.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event for a single call to a solver, committed by
+ * {@link SolverTrace}. The duration of the event is the time of the whole call.
+ * It is only recorded when enabled in the recording settings, e.g.
+ * <pre>
+ * java -XX:StartFlightRecording:settings=profile ...
+ * </pre>
+ */
+@Name("pbsweeper.SolverCall")
+@Label("Solver Call")
+@Category({"PseudoBoolean-Sweeper", "Solver"})
+@Description("A call to a mine solver and what it did inside")
+@StackTrace(false)
+public class SolverCallEvent extends jdk.jfr.Event {
+
+    @Label("Solver")
+    String solver;
+
+    @Label("Method")
+    String method;
+
+    @Label("Frontier Size")
+    @Description("Closed shore cells, the cells next to an open cell")
+    int frontierSize;
+
+    @Label("Sea Size")
+    @Description("Closed cells with no open neighbour")
+    int seaSize;
+
+    @Label("Components")
+    int components;
+
+    @Label("SAT Calls")
+    long satCalls;
+
+    @Label("Constraints")
+    @Description("Pseudo-boolean constraints added to the solvers")
+    long constraints;
+
+    @Label("Models")
+    @Description("Models counted or enumerated")
+    long models;
+
+    @Label("Frontier Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long frontierTime;
+
+    @Label("Component Time")
+    @Description("Time solving or counting the frontier components")
+    @Timespan(Timespan.NANOSECONDS)
+    long componentTime;
+
+    @Label("Global Time")
+    @Description("Time spent after the components, adding the mine count or combining the counts")
+    @Timespan(Timespan.NANOSECONDS)
+    long globalTime;
+
+    @Label("Results")
+    @Description("Cells known or given a probability")
+    int results;
+}
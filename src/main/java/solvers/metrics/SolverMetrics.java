@@ -0,0 +1,148 @@
+package main.java.solvers.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of one kind of solver, registered as an
+ * MBean the first time the solver class is used.
+ * <p>
+ * Nothing is recorded until it is enabled, with -Dsolver.metrics=true or by
+ * setting the Enabled attribute over JMX, so a disabled solver only pays for
+ * reading a volatile field.
+ */
+public class SolverMetrics implements SolverMetricsMBean {
+
+    private static final String ENABLED_PROPERTY = "solver.metrics";
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final Map<String, SolverMetrics> METRICS = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final LongAdder calls;
+    private final LongAdder satCalls;
+    private final LongAdder constraints;
+    private final LongAdder models;
+    private final RollingHistogram latency;
+    private final RollingHistogram satCallsPerCall;
+    private volatile boolean enabled;
+
+    private SolverMetrics(String name) {
+        this.name = name;
+        this.calls = new LongAdder();
+        this.satCalls = new LongAdder();
+        this.constraints = new LongAdder();
+        this.models = new LongAdder();
+        this.latency = new RollingHistogram();
+        this.satCallsPerCall = new RollingHistogram();
+        this.enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+    }
+
+    /**
+     * @return the metrics of the solver with the given name, registering them
+     * the first time.
+     */
+    public static SolverMetrics of(String solver) {
+        return METRICS.computeIfAbsent(solver, SolverMetrics::register);
+    }
+
+    private static SolverMetrics register(String solver) {
+        SolverMetrics metrics = new SolverMetrics(solver);
+        try {
+            var name = new ObjectName(SolverMetrics.class.getPackageName() + ":type=SolverMetrics,name=" + solver);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by another class loader, this copy still counts
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+        return metrics;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void record(long nanos, long sat, long constraintCount, long modelCount) {
+        calls.increment();
+        satCalls.add(sat);
+        constraints.add(constraintCount);
+        models.add(modelCount);
+        latency.record(nanos);
+        satCallsPerCall.record(sat);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getSatCalls() {
+        return satCalls.sum();
+    }
+
+    @Override
+    public long getConstraints() {
+        return constraints.sum();
+    }
+
+    @Override
+    public long getModels() {
+        return models.sum();
+    }
+
+    @Override
+    public long getRecentCalls() {
+        return latency.getCount();
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latency.getPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP95Millis() {
+        return latency.getPercentile(95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latency.getPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latency.getMax() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getRecentSatCallsP95() {
+        return satCallsPerCall.getPercentile(95);
+    }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        satCalls.reset();
+        constraints.reset();
+        models.reset();
+        latency.reset();
+        satCallsPerCall.reset();
+    }
+}
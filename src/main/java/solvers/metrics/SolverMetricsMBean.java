@@ -0,0 +1,35 @@
+package main.java.solvers.metrics;
+
+/**
+ * The metrics of a solver as seen through JMX, e.g. in JConsole under
+ * main.java.solvers.metrics. Totals count from start up or the last reset, the
+ * latencies only cover the last minute.
+ */
+public interface SolverMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getCalls();
+
+    long getSatCalls();
+
+    long getConstraints();
+
+    long getModels();
+
+    long getRecentCalls();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP95Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyMaxMillis();
+
+    double getRecentSatCallsP95();
+
+    void reset();
+}
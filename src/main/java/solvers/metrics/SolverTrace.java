@@ -0,0 +1,130 @@
+package main.java.solvers.metrics;
+
+import main.java.solvers.FrontierComponent;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * What a single solver call did, filled in by the solver as it goes and
+ * handed to the flight recorder and the solver metrics when it finishes.
+ * <p>
+ * When neither the flight recorder event nor the metrics are enabled,
+ * {@link #start} returns a shared trace that ignores everything, so an
+ * uninstrumented call costs two checks. The counters can be added to from the
+ * threads the components are solved on.
+ */
+public class SolverTrace {
+
+    private static final SolverTrace DISABLED = new SolverTrace(null, null, null);
+
+    private final SolverMetrics metrics;
+    private final SolverCallEvent event;
+    private final String method;
+    private final AtomicLong satCalls;
+    private final AtomicLong constraints;
+    private final AtomicLong models;
+    private final long start;
+    private long phaseStart;
+    private long frontierTime;
+    private long componentTime;
+    private int frontierSize;
+    private int seaSize;
+    private int components;
+
+    private SolverTrace(SolverMetrics metrics, SolverCallEvent event, String method) {
+        this.metrics = metrics;
+        this.event = event;
+        this.method = method;
+        this.satCalls = new AtomicLong();
+        this.constraints = new AtomicLong();
+        this.models = new AtomicLong();
+        this.start = System.nanoTime();
+        this.phaseStart = start;
+    }
+
+    public static SolverTrace start(SolverMetrics metrics, String method) {
+        SolverCallEvent event = new SolverCallEvent();
+        if (!event.isEnabled() && !metrics.isEnabled()) {
+            return DISABLED;
+        }
+        event.begin();
+        return new SolverTrace(metrics, event, method);
+    }
+
+    /**
+     * The land, shore and sea have been found, the components are solved next.
+     */
+    public void frontierFound(List<FrontierComponent> components, int seaSize) {
+        if (this == DISABLED) {
+            return;
+        }
+        for (FrontierComponent component : components) {
+            this.frontierSize += component.size();
+        }
+        this.seaSize = seaSize;
+        this.components = components.size();
+        long now = System.nanoTime();
+        frontierTime = now - phaseStart;
+        phaseStart = now;
+    }
+
+    /**
+     * The components are solved, anything after this is global work.
+     */
+    public void componentsSolved() {
+        if (this == DISABLED) {
+            return;
+        }
+        long now = System.nanoTime();
+        componentTime = now - phaseStart;
+        phaseStart = now;
+    }
+
+    public void addSatCalls(long count) {
+        if (this != DISABLED) {
+            satCalls.addAndGet(count);
+        }
+    }
+
+    public void addConstraints(long count) {
+        if (this != DISABLED) {
+            constraints.addAndGet(count);
+        }
+    }
+
+    public void addModels(long count) {
+        if (this != DISABLED) {
+            models.addAndGet(count);
+        }
+    }
+
+    /**
+     * @param results the cells the call returned.
+     */
+    public void finish(int results) {
+        if (this == DISABLED) {
+            return;
+        }
+        long end = System.nanoTime();
+        if (metrics.isEnabled()) {
+            metrics.record(end - start, satCalls.get(), constraints.get(), models.get());
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.solver = metrics.getName();
+            event.method = method;
+            event.frontierSize = frontierSize;
+            event.seaSize = seaSize;
+            event.components = components;
+            event.satCalls = satCalls.get();
+            event.constraints = constraints.get();
+            event.models = models.get();
+            event.frontierTime = frontierTime;
+            event.componentTime = componentTime;
+            event.globalTime = end - phaseStart;
+            event.results = results;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package main.java.solvers.probability;
+
+import main.java.game.Cell;
+import main.java.game.Frontier;
+import org.apache.commons.math3.fraction.BigFraction;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives an answer within a fixed time budget. The exact probabilities are tried
+ * first with half of the budget, if the models can not be counted in time the
+ * rest of the budget is spent on a Monte Carlo estimate instead.
+ */
+public class AdaptiveProbabilityMineSolver implements IProbabilityMineSolver {
+
+    private final TrueProbabilityMineSolver exactSolver;
+    private final MonteCarloProbabilityMineSolver estimatingSolver;
+    private boolean lastResultExact;
+
+    public AdaptiveProbabilityMineSolver(Cell[][] cells, int width, int height, int mines) {
+        this.exactSolver = new TrueProbabilityMineSolver(cells, width, height, mines);
+        this.estimatingSolver = new MonteCarloProbabilityMineSolver(cells, width, height, mines);
+        this.exactSolver.setPrecisionMode(PrecisionMode.DOUBLE);
+        setTimeBudget(1000);
+    }
+
+    /**
+     * @param timeBudget total time in milliseconds, 1000 by default.
+     */
+    public void setTimeBudget(long timeBudget) {
+        long exactBudget = Math.max(1, timeBudget / 2);
+        exactSolver.setTimeBudget(exactBudget);
+        estimatingSolver.setTimeBudget(Math.max(1, timeBudget - exactBudget));
+    }
+
+    /**
+     * Read the land, shore and sea cells from the frontier of the game instead
+     * of scanning the board on every call.
+     */
+    public void setFrontier(Frontier frontier) {
+        exactSolver.setFrontier(frontier);
+        estimatingSolver.setFrontier(frontier);
+    }
+
+    /**
+     * @return true if the last answer came from exact counting, false if it was
+     * estimated.
+     */
+    public boolean isLastResultExact() {
+        return lastResultExact;
+    }
+
+    public TrueProbabilityMineSolver getExactSolver() {
+        return exactSolver;
+    }
+
+    public MonteCarloProbabilityMineSolver getEstimatingSolver() {
+        return estimatingSolver;
+    }
+
+    public List<Cell> getBestSafeProbabilityCells() {
+        List<Cell> cells = exactSolver.getBestSafeProbabilityCells();
+        lastResultExact = !cells.isEmpty();
+        if (!lastResultExact) {
+            cells = estimatingSolver.getBestSafeProbabilityCells();
+        }
+        return cells;
+    }
+
+    public Map<Cell, BigFraction> getProbabilities() {
+        Map<Cell, BigFraction> probabilities = exactSolver.getProbabilities();
+        lastResultExact = !probabilities.isEmpty();
+        if (!lastResultExact) {
+            probabilities = estimatingSolver.getProbabilities();
+        }
+        return probabilities;
+    }
+
+    @Override
+    public Map<Cell, Double> getApproximateProbabilities() {
+        Map<Cell, Double> probabilities = exactSolver.getApproximateProbabilities();
+        lastResultExact = !probabilities.isEmpty();
+        if (!lastResultExact) {
+            probabilities = estimatingSolver.getApproximateProbabilities();
+        }
+        return probabilities;
+    }
+}
@@ -0,0 +1,75 @@
+package main.java.solvers.probability;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of binomial coefficients, a whole row of Pascal's triangle is built the
+ * first time a sea size is seen and kept for later calls. Only the most
+ * recently used rows are kept, the sea only ever shrinks during a game so old
+ * rows are rarely needed again. Rows of natural logarithms are kept the same
+ * way for the floating-point computations.
+ * <p>
+ * Not thread safe, every solver owns its own table.
+ */
+public class BinomialTable {
+
+    private static final int MAX_ROWS = 8;
+
+    private final Map<Integer, BigInteger[]> rows;
+    private final Map<Integer, double[]> logRows;
+
+    public BinomialTable() {
+        this.rows = newRowCache();
+        this.logRows = newRowCache();
+    }
+
+    private static <T> Map<Integer, T> newRowCache() {
+        return new LinkedHashMap<>(MAX_ROWS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                return size() > MAX_ROWS;
+            }
+        };
+    }
+
+    /**
+     * @return n choose k, zero if k is not in the range [0, n].
+     */
+    public BigInteger get(int n, int k) {
+        if (k < 0 || k > n) {
+            return BigInteger.ZERO;
+        }
+        return rows.computeIfAbsent(n, this::buildRow)[k];
+    }
+
+    /**
+     * @return the natural logarithm of n choose k, negative infinity if k is not
+     * in the range [0, n].
+     */
+    public double getLog(int n, int k) {
+        if (k < 0 || k > n) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return logRows.computeIfAbsent(n, this::buildLogRow)[k];
+    }
+
+    private BigInteger[] buildRow(int n) {
+        BigInteger[] row = new BigInteger[n + 1];
+        row[0] = BigInteger.ONE;
+        for (int k = 0; k < n; k++) {
+            // C(n, k + 1) = C(n, k) * (n - k) / (k + 1)
+            row[k + 1] = row[k].multiply(BigInteger.valueOf(n - k)).divide(BigInteger.valueOf(k + 1));
+        }
+        return row;
+    }
+
+    private double[] buildLogRow(int n) {
+        double[] row = new double[n + 1];
+        for (int k = 0; k < n; k++) {
+            row[k + 1] = row[k] + Math.log(n - k) - Math.log(k + 1);
+        }
+        return row;
+    }
+}
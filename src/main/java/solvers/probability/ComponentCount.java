@@ -0,0 +1,185 @@
+package main.java.solvers.probability;
+
+import main.java.game.Cell;
+import main.java.solvers.FrontierComponent;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The number of models of a single frontier component, broken down by the
+ * number of mines used in the model.
+ * <p>
+ * The counts are kept in longs, a component with too many models for a long
+ * keeps them in BigIntegers instead.
+ */
+public class ComponentCount {
+
+    private static final int SCALED_BITS = 62;  // bits kept of the largest count when scaled to a double
+
+    private final FrontierComponent component;
+    private final int maxMines;
+    private final long[] models;        // models[k], models with k mines
+    private final long[][] cellMines;   // cellMines[i][k], models with k mines where cell i is a mine
+    private final Optional<BigCounts> bigCounts;  // the counts when they do not fit in a long
+
+    public ComponentCount(FrontierComponent component) {
+        this(component, new long[component.size() + 1], new long[component.size()][component.size() + 1]);
+    }
+
+    public ComponentCount(FrontierComponent component, long[] models, long[][] cellMines) {
+        this.component = component;
+        this.maxMines = models.length - 1;
+        this.models = models;
+        this.cellMines = cellMines;
+        this.bigCounts = Optional.empty();
+    }
+
+    public ComponentCount(FrontierComponent component, BigInteger[] models, BigInteger[][] cellMines) {
+        this.component = component;
+        this.maxMines = models.length - 1;
+        this.models = new long[0];
+        this.cellMines = new long[0][];
+        this.bigCounts = Optional.of(new BigCounts(models, cellMines));
+    }
+
+    /**
+     * Count a model of the component.
+     *
+     * @param isMine isMine[i] is true if the ith closed cell of the component is
+     *               a mine in the model.
+     */
+    public void addModel(boolean[] isMine) {
+        int k = 0;
+        for (boolean mine : isMine) {
+            if (mine) {
+                k++;
+            }
+        }
+        models[k]++;
+        for (int i = 0; i < isMine.length; i++) {
+            if (isMine[i]) {
+                cellMines[i][k]++;
+            }
+        }
+    }
+
+    public FrontierComponent getComponent() {
+        return component;
+    }
+
+    public List<Cell> getCells() {
+        return component.getClosedCells();
+    }
+
+    /**
+     * @return true if there is a model that uses exactly k mines.
+     */
+    public boolean hasModels(int k) {
+        return bigCounts.map(big -> big.models[k].signum() != 0).orElseGet(() -> models[k] != 0);
+    }
+
+    /**
+     * @return the number of models that use exactly k mines.
+     */
+    public BigInteger getModels(int k) {
+        return bigCounts.map(big -> big.models[k]).orElseGet(() -> BigInteger.valueOf(models[k]));
+    }
+
+    /**
+     * @return the power of two the counts are divided by in
+     * {@link #getScaledModels(int)}, zero unless the largest count needs more
+     * than 62 bits.
+     */
+    public int getScale() {
+        return bigCounts.map(big -> big.scale).orElse(0);
+    }
+
+    /**
+     * @return the number of models that use exactly k mines divided by 2 to the
+     * power of {@link #getScale()}, as a double. Zero if it is too small next to
+     * the largest count for a double.
+     */
+    public double getScaledModels(int k) {
+        if (bigCounts.isEmpty()) {
+            return models[k];
+        }
+        BigInteger m = bigCounts.get().models[k];
+        int shift = Math.max(0, m.bitLength() - SCALED_BITS);
+        return Math.scalb(m.shiftRight(shift).doubleValue(), shift - bigCounts.get().scale);
+    }
+
+    /**
+     * @return the natural logarithm of the number of models that use exactly k
+     * mines, negative infinity if there are none.
+     */
+    public double getLogModels(int k) {
+        if (bigCounts.isEmpty()) {
+            return Math.log(models[k]);
+        }
+        BigInteger m = bigCounts.get().models[k];
+        int shift = Math.max(0, m.bitLength() - SCALED_BITS);
+        return Math.log(m.shiftRight(shift).doubleValue()) + shift * Math.log(2);
+    }
+
+    /**
+     * @return the number of models of the component, whatever the number of
+     * mines.
+     */
+    public BigInteger getTotalModels() {
+        BigInteger total = BigInteger.ZERO;
+        for (int k = 0; k <= maxMines; k++) {
+            total = total.add(getModels(k));
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of models that use exactly k mines and have the ith
+     * cell of the component as a mine.
+     */
+    public BigInteger getCellMines(int i, int k) {
+        return bigCounts.map(big -> big.cellMines[i][k]).orElseGet(() -> BigInteger.valueOf(cellMines[i][k]));
+    }
+
+    /**
+     * @return the share of the models that use exactly k mines that have the
+     * ith cell of the component as a mine, zero if there are no such models.
+     */
+    public double getCellMineFraction(int i, int k) {
+        if (bigCounts.isEmpty()) {
+            return models[k] == 0 ? 0 : (double) cellMines[i][k] / models[k];
+        }
+        BigInteger total = bigCounts.get().models[k];
+        if (total.signum() == 0) {
+            return 0;
+        }
+        // both divided by the same power of two so they fit in a double
+        int shift = Math.max(0, total.bitLength() - SCALED_BITS);
+        return bigCounts.get().cellMines[i][k].shiftRight(shift).doubleValue() / total.shiftRight(shift).doubleValue();
+    }
+
+    /**
+     * @return the largest number of mines a model of the component can have.
+     */
+    public int getMaxMines() {
+        return maxMines;
+    }
+
+    private static class BigCounts {
+        private final BigInteger[] models;
+        private final BigInteger[][] cellMines;
+        private final int scale;
+
+        private BigCounts(BigInteger[] models, BigInteger[][] cellMines) {
+            this.models = models;
+            this.cellMines = cellMines;
+            int bits = 0;
+            for (BigInteger m : models) {
+                bits = Math.max(bits, m.bitLength());
+            }
+            this.scale = Math.max(0, bits - SCALED_BITS);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package main.java.solvers.probability;
+
+import main.java.game.Cell;
+import main.java.game.CellState;
+import main.java.game.NeighbourIndex;
+import main.java.solvers.FrontierComponent;
+import org.sat4j.specs.TimeoutException;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the models of a frontier component without listing them.
+ * <p>
+ * The closed cells are given a value one at a time. Only the constraints that
+ * have been started but not finished matter for the rest of the cells, so
+ * partial assignments that leave these constraints needing the same number of
+ * mines are merged into a single state. A forward pass counts the ways of
+ * reaching every state, a backward pass counts the ways of finishing from every
+ * state, and the two are combined to get the count of every cell. All counts
+ * are kept per number of mines used, in longs unless the component is large
+ * enough for them to overflow.
+ */
+public class ComponentModelCounter {
+
+    private final FrontierComponent component;
+    private final Cell[][] cells;
+    private final long deadline;       // System.nanoTime() after which counting is given up
+    private final boolean hasDeadline;
+
+    private int[] order;               // order[i], the cell given a value in step i
+    private int[][] constraintCells;   // constraintCells[c], the cells of constraint c
+    private int[] degree;              // degree[c], the number of mines constraint c needs
+    private int[] firstStep;           // firstStep[c], the step of the first cell of constraint c
+    private int[] lastStep;            // lastStep[c], the step of the last cell of constraint c
+    private int[][] active;            // active[i], constraints started but not finished after step i
+    private int[][] stepConstraints;   // stepConstraints[i], constraints containing the cell of step i
+    private int[][] stepRemaining;     // stepRemaining[i][j], cells of constraint stepConstraints[i][j] given a value after step i
+    private int[] residuals;           // scratch space, mines each constraint still needs
+
+    public ComponentModelCounter(FrontierComponent component, Cell[][] cells) {
+        this.component = component;
+        this.cells = cells;
+        this.deadline = 0;
+        this.hasDeadline = false;
+    }
+
+    /**
+     * @param deadline value of System.nanoTime() after which counting is given
+     *                 up.
+     */
+    public ComponentModelCounter(FrontierComponent component, Cell[][] cells, long deadline) {
+        this.component = component;
+        this.cells = cells;
+        this.deadline = deadline;
+        this.hasDeadline = true;
+    }
+
+    /**
+     * @return the number of models of the component, in BigIntegers if it has
+     * too many cells for the counts to be sure to fit in a long.
+     * @throws TimeoutException if the deadline passes before the count is
+     *                          finished.
+     */
+    public ComponentCount count() throws TimeoutException {
+        // no count is ever larger than 2^n, the number of ways of filling n cells
+        return component.size() < Long.SIZE - 1 ? count(new LongArithmetic()) : count(new BigArithmetic());
+    }
+
+    private <T> ComponentCount count(Arithmetic<T> arithmetic) throws TimeoutException {
+        int n = component.size();
+        buildConstraints();
+
+        // forward[i], ways of giving the first i cells a value, by state and mines
+        List<Map<String, T>> forward = new ArrayList<>();
+        Map<String, T> start = new HashMap<>();
+        start.put("", arithmetic.one());
+        forward.add(start);
+        for (int i = 0; i < n; i++) {
+            checkDeadline();
+            Map<String, T> next = new HashMap<>();
+            final int length = i + 2;
+            for (var pair : forward.get(i).entrySet()) {
+                for (int value = 0; value <= 1; value++) {
+                    String state = step(i, pair.getKey(), value);
+                    if (state != null) {
+                        arithmetic.addShifted(next.computeIfAbsent(state, s -> arithmetic.zeros(length)), pair.getValue(), value);
+                    }
+                }
+            }
+            forward.add(next);
+        }
+
+        // backward[i], ways of giving the cells after the first i a value
+        List<Map<String, T>> backward = new ArrayList<>();
+        for (int i = 0; i <= n; i++) {
+            backward.add(new HashMap<>());
+        }
+        backward.get(n).put("", arithmetic.one());
+        for (int i = n - 1; i >= 0; i--) {
+            checkDeadline();
+            Map<String, T> current = backward.get(i);
+            final int length = n - i + 1;
+            for (String state : forward.get(i).keySet()) {
+                for (int value = 0; value <= 1; value++) {
+                    String nextState = step(i, state, value);
+                    T after = nextState == null ? null : backward.get(i + 1).get(nextState);
+                    if (after != null) {
+                        arithmetic.addShifted(current.computeIfAbsent(state, s -> arithmetic.zeros(length)), after, value);
+                    }
+                }
+            }
+        }
+
+        T models = arithmetic.zeros(n + 1);
+        T total = backward.get(0).get("");
+        if (total != null) {
+            arithmetic.addShifted(models, total, 0);
+        }
+
+        List<T> cellMines = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            cellMines.add(arithmetic.zeros(n + 1));
+        }
+        for (int i = 0; i < n; i++) {
+            T counts = cellMines.get(order[i]);
+            for (var pair : forward.get(i).entrySet()) {
+                String nextState = step(i, pair.getKey(), 1);
+                T after = nextState == null ? null : backward.get(i + 1).get(nextState);
+                if (after != null) {
+                    arithmetic.addConvolution(counts, pair.getValue(), after, 1);
+                }
+            }
+        }
+        return arithmetic.toCount(component, models, cellMines);
+    }
+
+    private void checkDeadline() throws TimeoutException {
+        if (hasDeadline && System.nanoTime() - deadline > 0) {
+            throw new TimeoutException("Model counting went over its time budget");
+        }
+    }
+
+    /**
+     * Give the cell of step i a value.
+     *
+     * @return the state after the step, null if the value breaks a constraint.
+     */
+    private String step(int i, String state, int value) {
+        if (i > 0) {
+            int[] before = active[i - 1];
+            for (int j = 0; j < before.length; j++) {
+                residuals[before[j]] = state.charAt(j);
+            }
+        }
+        int[] constraints = stepConstraints[i];
+        for (int j = 0; j < constraints.length; j++) {
+            int c = constraints[j];
+            int residual = (firstStep[c] == i ? degree[c] : residuals[c]) - value;
+            if (residual < 0 || residual > stepRemaining[i][j]) {
+                return null;
+            }
+            residuals[c] = residual;
+        }
+        StringBuilder next = new StringBuilder(active[i].length);
+        for (int c : active[i]) {
+            next.append((char) residuals[c]);
+        }
+        return next.toString();
+    }
+
+    private void buildConstraints() {
+        List<Cell> closedCells = component.getClosedCells();
+        int n = closedCells.size();
+        Map<Cell, Integer> index = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            index.put(closedCells.get(i), i);
+        }
+
+        List<Cell> openCells = component.getOpenCells();
+        constraintCells = new int[openCells.size()][];
+        degree = new int[openCells.size()];
+        List<List<Integer>> cellConstraints = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            cellConstraints.add(new ArrayList<>());
+        }
+        NeighbourIndex neighbourIndex = NeighbourIndex.of(cells);
+        for (int c = 0; c < openCells.size(); c++) {
+            Cell cell = openCells.get(c);
+            degree[c] = cell.getNumber();
+            int id = neighbourIndex.index(cell.getX(), cell.getY());
+            int[] constrained = new int[neighbourIndex.getCount(id)];
+            int size = 0;
+            for (int k = neighbourIndex.start(id); k < neighbourIndex.end(id); k++) {
+                Cell neighbour = neighbourIndex.getCell(cells, neighbourIndex.neighbour(id, k));
+                if (neighbour.getState() != CellState.OPEN) {
+                    constrained[size++] = index.get(neighbour);
+                }
+            }
+            constraintCells[c] = Arrays.copyOf(constrained, size);
+            for (int i : constraintCells[c]) {
+                cellConstraints.get(i).add(c);
+            }
+        }
+
+        order = breadthFirstOrder(n, cellConstraints);
+        int[] position = new int[n];
+        for (int i = 0; i < n; i++) {
+            position[order[i]] = i;
+        }
+
+        firstStep = new int[degree.length];
+        lastStep = new int[degree.length];
+        residuals = new int[degree.length];
+        for (int c = 0; c < degree.length; c++) {
+            firstStep[c] = n;
+            lastStep[c] = -1;
+            for (int i : constraintCells[c]) {
+                firstStep[c] = Math.min(firstStep[c], position[i]);
+                lastStep[c] = Math.max(lastStep[c], position[i]);
+            }
+        }
+
+        stepConstraints = new int[n][];
+        stepRemaining = new int[n][];
+        for (int i = 0; i < n; i++) {
+            stepConstraints[i] = cellConstraints.get(order[i]).stream().mapToInt(Integer::intValue).toArray();
+            stepRemaining[i] = new int[stepConstraints[i].length];
+            for (int j = 0; j < stepConstraints[i].length; j++) {
+                for (int cell : constraintCells[stepConstraints[i][j]]) {
+                    if (position[cell] > i) {
+                        stepRemaining[i][j]++;
+                    }
+                }
+            }
+        }
+
+        // a constraint starts at its first step and finishes at its last, so
+        // each step only drops the finished constraints and adds the started ones
+        active = new int[n][];
+        int[] before = new int[0];
+        for (int i = 0; i < n; i++) {
+            int[] started = new int[before.length + stepConstraints[i].length];
+            int size = 0;
+            for (int c : before) {
+                if (lastStep[c] > i) {
+                    started[size++] = c;
+                }
+            }
+            for (int c : stepConstraints[i]) {
+                if (firstStep[c] == i && lastStep[c] > i) {
+                    started[size++] = c;
+                }
+            }
+            active[i] = Arrays.copyOf(started, size);
+            before = active[i];
+        }
+    }
+
+    /**
+     * Order the cells so that cells sharing a constraint are close together,
+     * this keeps the number of unfinished constraints (and so states) small.
+     */
+    private int[] breadthFirstOrder(int n, List<List<Integer>> cellConstraints) {
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        int size = 0;
+        for (int root = 0; root < n; root++) {
+            if (visited[root]) {
+                continue;
+            }
+            Deque<Integer> queue = new ArrayDeque<>();
+            queue.add(root);
+            visited[root] = true;
+            while (!queue.isEmpty()) {
+                int i = queue.poll();
+                order[size++] = i;
+                for (int c : cellConstraints.get(i)) {
+                    for (int j : constraintCells[c]) {
+                        if (!visited[j]) {
+                            visited[j] = true;
+                            queue.add(j);
+                        }
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * The counts of a state by number of mines, as a polynomial in an array,
+     * and the sums and products the counting needs.
+     */
+    private interface Arithmetic<T> {
+
+        T zeros(int length);
+
+        T one();
+
+        void addShifted(T target, T source, int shift);
+
+        void addConvolution(T target, T a, T b, int shift);
+
+        ComponentCount toCount(FrontierComponent component, T models, List<T> cellMines);
+    }
+
+    private static class LongArithmetic implements Arithmetic<long[]> {
+        @Override
+        public long[] zeros(int length) {
+            return new long[length];
+        }
+
+        @Override
+        public long[] one() {
+            return new long[]{1};
+        }
+
+        @Override
+        public void addShifted(long[] target, long[] source, int shift) {
+            for (int k = 0; k < source.length; k++) {
+                if (source[k] != 0) {
+                    target[k + shift] = Math.addExact(target[k + shift], source[k]);
+                }
+            }
+        }
+
+        @Override
+        public void addConvolution(long[] target, long[] a, long[] b, int shift) {
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] == 0) {
+                    continue;
+                }
+                for (int j = 0; j < b.length; j++) {
+                    if (b[j] != 0) {
+                        target[i + j + shift] = Math.addExact(target[i + j + shift], Math.multiplyExact(a[i], b[j]));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public ComponentCount toCount(FrontierComponent component, long[] models, List<long[]> cellMines) {
+            return new ComponentCount(component, models, cellMines.toArray(new long[0][]));
+        }
+    }
+
+    private static class BigArithmetic implements Arithmetic<BigInteger[]> {
+        @Override
+        public BigInteger[] zeros(int length) {
+            BigInteger[] zeros = new BigInteger[length];
+            Arrays.fill(zeros, BigInteger.ZERO);
+            return zeros;
+        }
+
+        @Override
+        public BigInteger[] one() {
+            return new BigInteger[]{BigInteger.ONE};
+        }
+
+        @Override
+        public void addShifted(BigInteger[] target, BigInteger[] source, int shift) {
+            for (int k = 0; k < source.length; k++) {
+                if (source[k].signum() != 0) {
+                    target[k + shift] = target[k + shift].add(source[k]);
+                }
+            }
+        }
+
+        @Override
+        public void addConvolution(BigInteger[] target, BigInteger[] a, BigInteger[] b, int shift) {
+            for (int i = 0; i < a.length; i++) {
+                if (a[i].signum() == 0) {
+                    continue;
+                }
+                for (int j = 0; j < b.length; j++) {
+                    if (b[j].signum() != 0) {
+                        target[i + j + shift] = target[i + j + shift].add(a[i].multiply(b[j]));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public ComponentCount toCount(FrontierComponent component, BigInteger[] models, List<BigInteger[]> cellMines) {
+            return new ComponentCount(component, models, cellMines.toArray(new BigInteger[0][]));
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package main.java.solvers.probability;
+
+/**
+ * How the models of a frontier component are counted.
+ */
+public enum CountingMode {
+    /**
+     * Count the models without listing them, see {@link ComponentModelCounter}.
+     */
+    COUNT,
+    /**
+     * List every model with the SAT solver, blocking each model once found.
+     */
+    ENUMERATE,
+}
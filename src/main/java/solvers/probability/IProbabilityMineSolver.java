@@ -3,10 +3,29 @@ package main.java.solvers.probability;
 import main.java.game.Cell;
 import org.apache.commons.math3.fraction.BigFraction;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public interface IProbabilityMineSolver {
     List<Cell> getBestSafeProbabilityCells();
     Map<Cell, BigFraction> getProbabilities();
+
+    /**
+     * Probabilities for consumers that do not need exact values, such as the
+     * heat map. Solvers that can compute these faster than the exact values
+     * should override this.
+     */
+    default Map<Cell, Double> getApproximateProbabilities() {
+        Map<Cell, Double> probabilities = new HashMap<>();
+        getProbabilities().forEach((cell, prob) -> probabilities.put(cell, prob.doubleValue()));
+        return probabilities;
+    }
+
+    /**
+     * Release anything the solver holds on to between calls. Should be called
+     * once the solver is finished with.
+     */
+    default void reset() {
+    }
 }
@@ -0,0 +1,75 @@
+package main.java.solvers.probability;
+
+/**
+ * A polynomial with non-negative coefficients kept as doubles scaled by a
+ * common factor, the floating-point counterpart of the BigInteger polynomials
+ * used to combine the mine counts of independent components.
+ * <p>
+ * The largest coefficient is always 1 and the scale is kept as a natural
+ * logarithm, so the products of many components never overflow.
+ */
+public class LogPolynomial {
+
+    private final double[] coefficients;
+    private final double logScale;
+
+    private LogPolynomial(double[] coefficients, double logScale) {
+        double max = 0;
+        for (double coefficient : coefficients) {
+            max = Math.max(max, coefficient);
+        }
+        if (max > 0) {
+            for (int k = 0; k < coefficients.length; k++) {
+                coefficients[k] /= max;
+            }
+            logScale += Math.log(max);
+        }
+        this.coefficients = coefficients;
+        this.logScale = logScale;
+    }
+
+    public static LogPolynomial one() {
+        return new LogPolynomial(new double[]{1}, 0);
+    }
+
+    /**
+     * @return the polynomial whose kth coefficient is the number of models of
+     * the component that use k mines.
+     */
+    public static LogPolynomial of(ComponentCount count) {
+        // the counts of a large component do not fit in a double, they are
+        // scaled down by a power of two and the power kept in the scale
+        double[] coefficients = new double[count.getMaxMines() + 1];
+        for (int k = 0; k < coefficients.length; k++) {
+            coefficients[k] = count.getScaledModels(k);
+        }
+        return new LogPolynomial(coefficients, count.getScale() * Math.log(2));
+    }
+
+    public LogPolynomial multiply(LogPolynomial other) {
+        double[] a = coefficients;
+        double[] b = other.coefficients;
+        double[] product = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) {
+                continue;
+            }
+            for (int j = 0; j < b.length; j++) {
+                product[i + j] += a[i] * b[j];
+            }
+        }
+        return new LogPolynomial(product, logScale + other.logScale);
+    }
+
+    public int getDegree() {
+        return coefficients.length - 1;
+    }
+
+    /**
+     * @return the natural logarithm of the kth coefficient, negative infinity if
+     * the coefficient is zero.
+     */
+    public double getLog(int k) {
+        return Math.log(coefficients[k]) + logScale;
+    }
+}
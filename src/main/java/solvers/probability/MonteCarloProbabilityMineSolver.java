@@ -0,0 +1,306 @@
+package main.java.solvers.probability;
+
+import main.java.game.Cell;
+import main.java.game.CellState;
+import main.java.game.Frontier;
+import main.java.game.NeighbourIndex;
+import main.java.solvers.FrontierComponent;
+import main.java.solvers.SolverUtil;
+import org.apache.commons.math3.fraction.BigFraction;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the mine probabilities by sampling configurations of the closed
+ * shore cells (sequential importance sampling).
+ * <p>
+ * The shore cells are given a value one at a time. A value is only picked if
+ * every constraint it is part of can still be met, when both values are
+ * possible a mine is picked with the mine density of the board. Each sample is
+ * weighted by the inverse of the chance of picking it times the number of ways
+ * of filling the sea with the mines that are left, which makes the weighted
+ * samples an estimate of the true (uniform over all boards) probabilities.
+ * <p>
+ * Sampling stops once the time budget or the sample budget is used up, so the
+ * run time does not depend on the size of the frontier.
+ */
+public class MonteCarloProbabilityMineSolver implements IProbabilityMineSolver {
+
+    private static final double Z_95 = 1.96;  // normal quantile of a 95% confidence interval
+    private static final int SAMPLES_BETWEEN_CLOCK_CHECKS = 64;
+
+    private final Cell[][] cells;
+    private final int width;
+    private final int height;
+    private final int mines;
+    private final BinomialTable binomials;
+    private final Random random;
+    private long timeBudget;
+    private Optional<Frontier> frontier;
+    private long sampleBudget;
+    private long samples;
+    private double effectiveSampleSize;
+
+    // the sampling problem, built before every estimation
+    private List<Cell> shoreCells;
+    private int[][] cellConstraints;  // cellConstraints[i], the constraints containing shore cell i
+    private int[] degree;             // degree[c], the number of mines constraint c needs
+    private int[] size;               // size[c], the number of shore cells of constraint c
+    private int seaSize;
+
+    public MonteCarloProbabilityMineSolver(Cell[][] cells, int width, int height, int mines) {
+        this.cells = cells;
+        this.width = width;
+        this.height = height;
+        this.mines = mines;
+        this.binomials = new BinomialTable();
+        this.random = new Random();
+        this.timeBudget = 200;
+        this.sampleBudget = Long.MAX_VALUE;
+        this.frontier = Optional.empty();
+    }
+
+    /**
+     * @param timeBudget time spent sampling in milliseconds, 200 by default.
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    /**
+     * @param sampleBudget largest number of samples taken, no limit by default.
+     */
+    public void setSampleBudget(long sampleBudget) {
+        this.sampleBudget = sampleBudget;
+    }
+
+    /**
+     * Read the land, shore and sea cells from the frontier of the game instead
+     * of scanning the board on every call.
+     */
+    public void setFrontier(Frontier frontier) {
+        this.frontier = Optional.of(frontier);
+    }
+
+    public void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * @return the number of samples taken by the last estimation.
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return the effective sample size of the last estimation, the number of
+     * unweighted samples that would give the same variance.
+     */
+    public double getEffectiveSampleSize() {
+        return effectiveSampleSize;
+    }
+
+    public List<Cell> getBestSafeProbabilityCells() {
+        List<Cell> lowestProbCells = new ArrayList<>();
+        double bestProb = 1;
+        for (var pair : getApproximateProbabilities().entrySet()) {
+            Cell cell = pair.getKey();
+            double prob = pair.getValue();
+            if (prob < bestProb) {
+                lowestProbCells.clear();
+                bestProb = prob;
+                lowestProbCells.add(cell);
+            } else if (prob == bestProb) {
+                lowestProbCells.add(cell);
+            }
+        }
+        return lowestProbCells;
+    }
+
+    public Map<Cell, BigFraction> getProbabilities() {
+        Map<Cell, BigFraction> probabilities = new HashMap<>();
+        getApproximateProbabilities().forEach((cell, prob) -> probabilities.put(cell, new BigFraction(prob)));
+        return probabilities;
+    }
+
+    @Override
+    public Map<Cell, Double> getApproximateProbabilities() {
+        Map<Cell, Double> probabilities = new HashMap<>();
+        getEstimates().forEach((cell, estimate) -> probabilities.put(cell, estimate.getProbability()));
+        return probabilities;
+    }
+
+    /**
+     * @return the estimated probability of every closed cell, with a 95%
+     * confidence interval. Empty if no sample could be completed.
+     */
+    public Map<Cell, ProbabilityEstimate> getEstimates() {
+        Map<Cell, ProbabilityEstimate> estimates = new HashMap<>();
+        buildProblem();
+
+        int n = shoreCells.size();
+        int closedCells = n + seaSize;
+        double density = closedCells == 0 ? 0 : (double) mines / closedCells;
+
+        // all weights are divided by exp(logScale), the largest weight seen so far
+        double logScale = Double.NEGATIVE_INFINITY;
+        double totalWeight = 0;
+        double totalSquaredWeight = 0;
+        double totalSeaMines = 0;
+        double[] cellMines = new double[n];
+
+        boolean[] isMine = new boolean[n];
+        int[] residual = new int[degree.length];
+        int[] unassigned = new int[degree.length];
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudget);
+        samples = 0;
+        while (samples < sampleBudget) {
+            if (samples % SAMPLES_BETWEEN_CLOCK_CHECKS == 0 && samples > 0 && System.nanoTime() - deadline > 0) {
+                break;
+            }
+            samples++;
+
+            double logWeight = sample(isMine, residual, unassigned, density);
+            if (logWeight == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            if (logWeight > logScale) {
+                double shrink = Math.exp(logScale - logWeight);
+                totalWeight *= shrink;
+                totalSquaredWeight *= shrink * shrink;
+                totalSeaMines *= shrink;
+                for (int i = 0; i < n; i++) {
+                    cellMines[i] *= shrink;
+                }
+                logScale = logWeight;
+            }
+
+            double weight = Math.exp(logWeight - logScale);
+            int shoreMines = 0;
+            for (int i = 0; i < n; i++) {
+                if (isMine[i]) {
+                    cellMines[i] += weight;
+                    shoreMines++;
+                }
+            }
+            totalWeight += weight;
+            totalSquaredWeight += weight * weight;
+            totalSeaMines += weight * (mines - shoreMines);
+        }
+
+        if (totalWeight == 0) {
+            effectiveSampleSize = 0;
+            return estimates;
+        }
+        effectiveSampleSize = totalWeight * totalWeight / totalSquaredWeight;
+
+        if (seaSize > 0) {
+            ProbabilityEstimate seaEstimate = estimate(totalSeaMines / (totalWeight * seaSize));
+            getSeaCells().forEach(cell -> estimates.put(cell, seaEstimate));
+        }
+        for (int i = 0; i < n; i++) {
+            estimates.put(shoreCells.get(i), estimate(cellMines[i] / totalWeight));
+        }
+        return estimates;
+    }
+
+    /**
+     * Draw a single sample.
+     *
+     * @return the natural logarithm of the weight of the sample, negative
+     * infinity if the sample broke a constraint or left an impossible number of
+     * mines for the sea.
+     */
+    private double sample(boolean[] isMine, int[] residual, int[] unassigned, double density) {
+        System.arraycopy(degree, 0, residual, 0, degree.length);
+        System.arraycopy(size, 0, unassigned, 0, size.length);
+        double logWeight = 0;
+        int shoreMines = 0;
+        for (int i = 0; i < isMine.length; i++) {
+            boolean canBeMine = true;
+            boolean canBeSafe = true;
+            for (int c : cellConstraints[i]) {
+                canBeMine &= residual[c] > 0;
+                canBeSafe &= residual[c] < unassigned[c];
+            }
+
+            boolean mine;
+            if (canBeMine && canBeSafe) {
+                mine = random.nextDouble() < density;
+                logWeight -= Math.log(mine ? density : 1 - density);
+            } else if (canBeMine || canBeSafe) {
+                mine = canBeMine;
+            } else {
+                return Double.NEGATIVE_INFINITY;
+            }
+
+            isMine[i] = mine;
+            for (int c : cellConstraints[i]) {
+                unassigned[c]--;
+                if (mine) {
+                    residual[c]--;
+                }
+            }
+            if (mine) {
+                shoreMines++;
+            }
+        }
+        return logWeight + binomials.getLog(seaSize, mines - shoreMines);
+    }
+
+    private ProbabilityEstimate estimate(double probability) {
+        double halfWidth = Z_95 * Math.sqrt(probability * (1 - probability) / effectiveSampleSize);
+        return new ProbabilityEstimate(probability,
+                Math.max(0, probability - halfWidth),
+                Math.min(1, probability + halfWidth));
+    }
+
+    private void buildProblem() {
+        shoreCells = new ArrayList<>();
+        List<Cell> openCells = new ArrayList<>();
+        for (FrontierComponent component : getFrontierComponents()) {
+            shoreCells.addAll(component.getClosedCells());
+            openCells.addAll(component.getOpenCells());
+        }
+        seaSize = frontier.map(Frontier::getSeaSize).orElseGet(() -> SolverUtil.getSeaCells(cells).size());
+
+        Map<Cell, Integer> index = new HashMap<>();
+        for (int i = 0; i < shoreCells.size(); i++) {
+            index.put(shoreCells.get(i), i);
+        }
+        List<List<Integer>> constraints = new ArrayList<>();
+        for (int i = 0; i < shoreCells.size(); i++) {
+            constraints.add(new ArrayList<>());
+        }
+        degree = new int[openCells.size()];
+        size = new int[openCells.size()];
+        NeighbourIndex neighbourIndex = NeighbourIndex.of(width, height);
+        for (int c = 0; c < openCells.size(); c++) {
+            Cell cell = openCells.get(c);
+            degree[c] = cell.getNumber();
+            int id = neighbourIndex.index(cell.getX(), cell.getY());
+            for (int k = neighbourIndex.start(id); k < neighbourIndex.end(id); k++) {
+                Cell neighbour = neighbourIndex.getCell(cells, neighbourIndex.neighbour(id, k));
+                if (neighbour.getState() != CellState.OPEN) {
+                    constraints.get(index.get(neighbour)).add(c);
+                    size[c]++;
+                }
+            }
+        }
+        cellConstraints = new int[shoreCells.size()][];
+        for (int i = 0; i < shoreCells.size(); i++) {
+            cellConstraints[i] = constraints.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private List<Cell> getSeaCells() {
+        return frontier.map(Frontier::getSeaCells).orElseGet(() -> SolverUtil.getSeaCells(cells));
+    }
+
+    private List<FrontierComponent> getFrontierComponents() {
+        return frontier.map(f -> SolverUtil.getFrontierComponents(cells, f))
+                .orElseGet(() -> SolverUtil.getFrontierComponents(cells));
+    }
+}
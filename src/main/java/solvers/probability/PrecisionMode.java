@@ -0,0 +1,17 @@
+package main.java.solvers.probability;
+
+/**
+ * The arithmetic used to combine the model counts into probabilities.
+ */
+public enum PrecisionMode {
+    /**
+     * Exact rational arithmetic, every probability is a reduced BigFraction.
+     */
+    EXACT,
+    /**
+     * Floating-point arithmetic on logarithms of the counts. The best cells are
+     * still chosen exactly, the exact probabilities are only worked out when
+     * several cells are too close to tell apart.
+     */
+    DOUBLE,
+}
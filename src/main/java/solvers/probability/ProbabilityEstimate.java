@@ -0,0 +1,40 @@
+package main.java.solvers.probability;
+
+/**
+ * An estimated mine probability together with a confidence interval.
+ */
+public class ProbabilityEstimate {
+
+    private final double probability;
+    private final double lower;
+    private final double upper;
+
+    public ProbabilityEstimate(double probability, double lower, double upper) {
+        this.probability = probability;
+        this.lower = lower;
+        this.upper = upper;
+    }
+
+    public double getProbability() {
+        return probability;
+    }
+
+    /**
+     * @return lower bound of the confidence interval.
+     */
+    public double getLower() {
+        return lower;
+    }
+
+    /**
+     * @return upper bound of the confidence interval.
+     */
+    public double getUpper() {
+        return upper;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.4f [%.4f, %.4f]", probability, lower, upper);
+    }
+}
@@ -0,0 +1,81 @@
+package main.java.solvers.probability;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.pb.IPBSolver;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.IVecInt;
+import org.sat4j.specs.TimeoutException;
+
+import java.util.function.Consumer;
+
+/**
+ * Lists the distinct assignments of a set of literals (the projection) that can
+ * be extended to a model of the solver.
+ * <p>
+ * Only the projected literals are blocked after each model. Any other literal
+ * in the solver (counters, open cells, ...) is ignored, so every assignment of
+ * the projection is given exactly once, and each blocking clause is only as
+ * long as the projection.
+ */
+public class ProjectedModelEnumerator {
+
+    private final IPBSolver solver;
+    private final int[] projection;
+    private int models;
+    private int satCalls;
+
+    /**
+     * @param solver     solver containing the constraints.
+     * @param projection the positive literals to enumerate the assignments of.
+     */
+    public ProjectedModelEnumerator(IPBSolver solver, int[] projection) {
+        this.solver = solver;
+        this.projection = projection;
+    }
+
+    /**
+     * Give every assignment to the consumer. The array passed is reused between
+     * calls, value[i] is true if projection[i] is true in the assignment.
+     */
+    public void enumerate(Consumer<boolean[]> consumer) throws TimeoutException {
+        boolean[] values = new boolean[projection.length];
+        IVecInt block = new VecInt(projection.length);
+        models = 0;
+        satCalls = 0;
+        while (isSatisfiable()) {
+            block.clear();
+            for (int i = 0; i < projection.length; i++) {
+                values[i] = solver.model(projection[i]);
+                block.push(values[i] ? -projection[i] : projection[i]);
+            }
+            models++;
+            consumer.accept(values);
+
+            try {
+                solver.addBlockingClause(block);
+            } catch (ContradictionException e) {
+                // the assignment was the only one left
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of assignments given by the last enumeration.
+     */
+    public int getModels() {
+        return models;
+    }
+
+    /**
+     * @return the number of SAT calls made by the last enumeration.
+     */
+    public int getSatCalls() {
+        return satCalls;
+    }
+
+    private boolean isSatisfiable() throws TimeoutException {
+        satCalls++;
+        return solver.isSatisfiable();
+    }
+}
@@ -1,40 +1,132 @@
 package main.java.solvers.probability;
 
-import com.google.common.math.BigIntegerMath;
 import main.java.game.Cell;
-import main.java.game.CellState;
-import main.java.solvers.constraints.IPBConstraintGenerator;
-import main.java.solvers.constraints.PBConstraintGeneratorOpenCells;
-import main.java.solvers.constraints.PBConstraintGeneratorSea;
+import main.java.game.Frontier;
+import main.java.solvers.FrontierComponent;
 import main.java.solvers.SolverUtil;
+import main.java.solvers.constraints.PBConstraintGeneratorComponent;
+import main.java.solvers.constraints.PBPresolver;
+import main.java.solvers.metrics.SolverMetrics;
+import main.java.solvers.metrics.SolverTrace;
 import org.apache.commons.math3.fraction.BigFraction;
-import org.sat4j.core.VecInt;
 import org.sat4j.pb.SolverFactory;
 import org.sat4j.pb.core.PBSolver;
-import org.sat4j.specs.ContradictionException;
-import org.sat4j.specs.IVecInt;
 import org.sat4j.specs.TimeoutException;
 
 import java.math.BigInteger;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 public class TrueProbabilityMineSolver implements IProbabilityMineSolver {
 
+    private static final SolverMetrics METRICS = SolverMetrics.of("TrueProbabilityMineSolver");
+
+    // Relative distance from the lowest floating-point probability within which
+    // cells are considered tied and compared exactly. Far larger than the
+    // rounding error of the floating-point computation.
+    private static final double TIE_TOLERANCE = 1e-7;
+
     private final Cell[][] cells;
     private final int width;
     private final int height;
     private final int mines;
+    private final BinomialTable binomials;
+    private ForkJoinPool pool;
+    private CountingMode countingMode;
+    private PrecisionMode precisionMode;
+    private long timeBudget;
+    private Optional<Frontier> frontier;
 
     public TrueProbabilityMineSolver(Cell[][] cells, int width, int height, int mines) {
         this.cells = cells;
         this.width = width;
         this.height = height;
         this.mines = mines;
+        this.binomials = new BinomialTable();
+        this.pool = ForkJoinPool.commonPool();
+        this.countingMode = CountingMode.COUNT;
+        this.precisionMode = PrecisionMode.EXACT;
+        this.frontier = Optional.empty();
+    }
+
+    /**
+     * Read the land, shore and sea cells from the frontier of the game instead
+     * of scanning the board on every call.
+     */
+    public void setFrontier(Frontier frontier) {
+        this.frontier = Optional.of(frontier);
+    }
+
+    /**
+     * Set the pool the frontier components are counted on, the common pool is
+     * used by default.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public void setCountingMode(CountingMode countingMode) {
+        this.countingMode = countingMode;
+    }
+
+    public void setPrecisionMode(PrecisionMode precisionMode) {
+        this.precisionMode = precisionMode;
+    }
+
+    /**
+     * Limit the time spent counting models, when the limit is reached no
+     * probabilities are returned. Zero (the default) means no limit.
+     *
+     * @param timeBudget limit in milliseconds.
+     */
+    public void setTimeBudget(long timeBudget) {
+        this.timeBudget = timeBudget;
     }
 
     public List<Cell> getBestSafeProbabilityCells() {
-        var probabilities = getProbabilities();
+        if (precisionMode == PrecisionMode.DOUBLE) {
+            return getBestSafeApproximateProbabilityCells();
+        }
+        return getBestCells(getProbabilities());
+    }
+
+    /**
+     * Find the best cells with the floating-point probabilities, the exact
+     * probabilities are only computed if the cells close to the lowest
+     * probability can not be told apart.
+     */
+    private List<Cell> getBestSafeApproximateProbabilityCells() {
+        var probabilities = getApproximateProbabilities();
+        double bestProb = 1;
+        for (double prob : probabilities.values()) {
+            bestProb = Math.min(bestProb, prob);
+        }
+
+        List<Cell> candidates = new ArrayList<>();
+        boolean isTied = false;
+        for (var pair : probabilities.entrySet()) {
+            double prob = pair.getValue();
+            if (prob <= bestProb * (1 + TIE_TOLERANCE)) {
+                candidates.add(pair.getKey());
+                isTied |= prob != bestProb;
+            }
+        }
+        if (!isTied) {
+            return candidates;
+        }
+
+        var exactProbabilities = getProbabilities();
+        if (exactProbabilities.isEmpty()) {
+            // out of time, the candidates are as good as each other
+            return candidates;
+        }
+        Map<Cell, BigFraction> candidateProbabilities = new HashMap<>();
+        candidates.forEach(cell -> candidateProbabilities.put(cell, exactProbabilities.get(cell)));
+        return getBestCells(candidateProbabilities);
+    }
+
+    private List<Cell> getBestCells(Map<Cell, BigFraction> probabilities) {
         List<Cell> lowestProbCells = new ArrayList<>();
         BigFraction bestProb = BigFraction.ONE;
         for (var pair : probabilities.entrySet()) {
@@ -53,118 +145,298 @@ public class TrueProbabilityMineSolver implements IProbabilityMineSolver {
     }
 
     public Map<Cell, BigFraction> getProbabilities() {
-        Map<Cell, BigInteger> cellMineCount = new HashMap<>();
+        SolverTrace trace = SolverTrace.start(METRICS, "getProbabilities");
+        Map<Cell, BigFraction> probabilities = getProbabilities(trace);
+        trace.finish(probabilities.size());
+        return probabilities;
+    }
+
+    private Map<Cell, BigFraction> getProbabilities(SolverTrace trace) {
         Map<Cell, BigFraction> probabilities = new HashMap<>();
 
-        BigInteger totalModels = BigInteger.ZERO;
-        BigFraction totalSeaModels = BigFraction.ZERO;
-        int seaSize = SolverUtil.getSeaCells(cells).size();
+        List<Cell> seaCells = getSeaCells();
+        int seaSize = seaCells.size();
 
-        PBSolver solver = SolverFactory.newDefault();
-        List<IPBConstraintGenerator> constraintGenerators = List.of(
-                new PBConstraintGeneratorSea(),
-                new PBConstraintGeneratorOpenCells()
-        );
+        Optional<List<ComponentCount>> componentCounts = countComponents(trace, seaSize);
+        if (componentCounts.isEmpty()) {
+            return probabilities;
+        }
+        List<ComponentCount> counts = componentCounts.get();
 
-        for (var constraintGenerator : constraintGenerators) {
-            constraintGenerator.generate(solver, cells, width, height, mines);
+        // models[t], the number of ways the components can use t mines together
+        List<BigInteger[]> prefixModels = new ArrayList<>();
+        BigInteger[] models = new BigInteger[]{BigInteger.ONE};
+        for (ComponentCount count : counts) {
+            prefixModels.add(models);
+            models = multiply(models, toPolynomial(count));
         }
 
-        try {
-            while (solver.isSatisfiable()) {
-                int[] model = solver.model();
+        BigInteger totalModels = BigInteger.ZERO;
+        BigInteger totalSeaMines = BigInteger.ZERO;
+        for (int t = 0; t < models.length; t++) {
+            int remainingMines = mines - t;
+            BigInteger totalPossibleModels = models[t].multiply(calculateAllPossibleModels(seaSize, remainingMines));
+            totalModels = totalModels.add(totalPossibleModels);
+            totalSeaMines = totalSeaMines.add(totalPossibleModels.multiply(BigInteger.valueOf(remainingMines)));
+        }
 
-                List<Cell> modelShoreMines = convertModelToCells(model);
+        if (totalModels.signum() == 0) {
+            return probabilities;
+        }
 
-                int remainingMinesInModel = mines - modelShoreMines.size();
+        if (seaSize > 0) {
+            updateSeaCellProbabilities(probabilities, seaCells, totalModels, totalSeaMines, seaSize);
+        }
 
-                BigInteger totalPossibleModels = calculateAllPossibleModels(seaSize, remainingMinesInModel);
+        // walk the components backwards so the product of the components after
+        // the current one can be built up as we go
+        BigInteger[] suffixModels = new BigInteger[]{BigInteger.ONE};
+        for (int i = counts.size() - 1; i >= 0; i--) {
+            ComponentCount count = counts.get(i);
+            BigInteger[] otherModels = multiply(prefixModels.get(i), suffixModels);
+            updateShoreCellProbabilities(probabilities, count, otherModels, seaSize, totalModels);
+            suffixModels = multiply(suffixModels, toPolynomial(count));
+        }
 
-                totalModels = totalModels.add(totalPossibleModels);
+        return probabilities;
+    }
 
-                updateAllMineCounts(cellMineCount, modelShoreMines, totalPossibleModels);
+    /**
+     * Same as {@link #getProbabilities()} but in floating-point arithmetic when
+     * the precision mode is {@link PrecisionMode#DOUBLE}. Every count is kept as
+     * a logarithm (or scaled by one), so the huge number of ways of filling the
+     * sea never overflows.
+     */
+    @Override
+    public Map<Cell, Double> getApproximateProbabilities() {
+        if (precisionMode == PrecisionMode.EXACT) {
+            return IProbabilityMineSolver.super.getApproximateProbabilities();
+        }
+        SolverTrace trace = SolverTrace.start(METRICS, "getApproximateProbabilities");
+        Map<Cell, Double> probabilities = getApproximateProbabilities(trace);
+        trace.finish(probabilities.size());
+        return probabilities;
+    }
 
-                BigFraction currentModelSeaProbability = calculateSeaProbability(seaSize, remainingMinesInModel);
+    private Map<Cell, Double> getApproximateProbabilities(SolverTrace trace) {
+        Map<Cell, Double> probabilities = new HashMap<>();
 
-                totalSeaModels = totalSeaModels.add(
-                        currentModelSeaProbability.multiply(totalPossibleModels)
-                );
+        List<Cell> seaCells = getSeaCells();
+        int seaSize = seaCells.size();
 
-                blockModelInSolver(solver, model);
-            }
-        } catch (TimeoutException t) {
+        Optional<List<ComponentCount>> componentCounts = countComponents(trace, seaSize);
+        if (componentCounts.isEmpty()) {
+            return probabilities;
+        }
+        List<ComponentCount> counts = componentCounts.get();
+
+        List<LogPolynomial> prefixModels = new ArrayList<>();
+        LogPolynomial models = LogPolynomial.one();
+        for (ComponentCount count : counts) {
+            prefixModels.add(models);
+            models = models.multiply(LogPolynomial.of(count));
+        }
+
+        // every count is divided by the largest term of the total to keep the
+        // sums in range
+        double logScale = Double.NEGATIVE_INFINITY;
+        for (int t = 0; t <= models.getDegree(); t++) {
+            logScale = Math.max(logScale, models.getLog(t) + binomials.getLog(seaSize, mines - t));
+        }
+        if (logScale == Double.NEGATIVE_INFINITY) {
             return probabilities;
-        } finally {
-            // need to make sure that solver will get garbage collected
-            // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
-            solver.reset();
-            solver = null;
+        }
+
+        double totalModels = 0;
+        double totalSeaMines = 0;
+        for (int t = 0; t <= models.getDegree(); t++) {
+            int remainingMines = mines - t;
+            double totalPossibleModels = Math.exp(models.getLog(t) + binomials.getLog(seaSize, remainingMines) - logScale);
+            totalModels += totalPossibleModels;
+            totalSeaMines += totalPossibleModels * remainingMines;
         }
 
         if (seaSize > 0) {
-            updateSeaCellProbabilities(probabilities, totalModels, totalSeaModels);
+            double seaProb = totalSeaMines / (totalModels * seaSize);
+            seaCells.forEach(cell -> probabilities.put(cell, seaProb));
         }
 
-        for (Cell cell : SolverUtil.getClosedShoreCells(cells)) {
-            updateShoreCellProbabilities(cellMineCount, probabilities, totalModels, cell);
+        LogPolynomial suffixModels = LogPolynomial.one();
+        for (int i = counts.size() - 1; i >= 0; i--) {
+            ComponentCount count = counts.get(i);
+            LogPolynomial otherModels = prefixModels.get(i).multiply(suffixModels);
+            // weights[k], the models of the whole board where this component
+            // uses k mines, so a large component can not overflow it. The
+            // count of k is taken on its own, it may be too small next to the
+            // largest for the polynomial to keep it
+            double[] weights = new double[count.getMaxMines() + 1];
+            for (int k = 0; k < weights.length; k++) {
+                // the weight of a k with no models could overflow, it is never used
+                if (!count.hasModels(k)) {
+                    continue;
+                }
+                for (int t = 0; t <= otherModels.getDegree(); t++) {
+                    weights[k] += Math.exp(count.getLogModels(k) + otherModels.getLog(t)
+                            + binomials.getLog(seaSize, mines - k - t) - logScale);
+                }
+            }
+
+            List<Cell> componentCells = count.getCells();
+            for (int j = 0; j < componentCells.size(); j++) {
+                double currentCellMineCount = 0;
+                for (int k = 0; k < weights.length; k++) {
+                    currentCellMineCount += weights[k] * count.getCellMineFraction(j, k);
+                }
+                probabilities.put(componentCells.get(j), currentCellMineCount / totalModels);
+            }
+            suffixModels = suffixModels.multiply(LogPolynomial.of(count));
         }
 
         return probabilities;
     }
 
-    private void updateShoreCellProbabilities(Map<Cell, BigInteger> cellMineCount, Map<Cell, BigFraction> probabilities, BigInteger totalModels, Cell cell) {
-        BigInteger currentCellMineCount = cellMineCount.getOrDefault(cell, BigInteger.ZERO);
-        probabilities.put(cell, new BigFraction(currentCellMineCount, totalModels).reduce());
+    /**
+     * Count every frontier component on its own (in parallel, each with its own
+     * solver), the components are only combined through the number of mines
+     * they leave for the sea.
+     *
+     * @return the counts in board order, empty if a component could not be
+     * counted (in time).
+     */
+    private Optional<List<ComponentCount>> countComponents(SolverTrace trace, int seaSize) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudget);
+        List<FrontierComponent> components = getFrontierComponents();
+        trace.frontierFound(components, seaSize);
+        List<ComponentCount> counts = new ArrayList<>();
+        for (Optional<ComponentCount> count : SolverUtil.mapInParallel(pool, components, component -> countModels(component, deadline, trace))) {
+            if (count.isEmpty()) {
+                return Optional.empty();
+            }
+            // the trace counts in a long, a component with more models only fills it
+            trace.addModels(count.get().getTotalModels().min(BigInteger.valueOf(Long.MAX_VALUE)).longValue());
+            counts.add(count.get());
+        }
+        trace.componentsSolved();
+        return Optional.of(counts);
+    }
+
+    private Optional<ComponentCount> countModels(FrontierComponent component, long deadline, SolverTrace trace) {
+        if (countingMode == CountingMode.ENUMERATE) {
+            return enumerateModels(component, deadline, trace);
+        }
+        try {
+            var counter = timeBudget > 0
+                    ? new ComponentModelCounter(component, cells, deadline)
+                    : new ComponentModelCounter(component, cells);
+            return Optional.of(counter.count());
+        } catch (TimeoutException e) {
+            return Optional.empty();
+        }
     }
 
-    private void updateSeaCellProbabilities(Map<Cell, BigFraction> probabilities, BigInteger totalModels, BigFraction totalSeaModels) {
-        BigFraction seaProb = totalSeaModels.divide(totalModels).reduce();
-        SolverUtil.getSeaCells(cells).forEach(cell -> probabilities.put(cell, seaProb));
+    private Optional<ComponentCount> enumerateModels(FrontierComponent component, long deadline, SolverTrace trace) {
+        ComponentCount count = new ComponentCount(component);
+        // only the closed cells of the component are enumerated
+        int[] projection = component.getClosedCells().stream()
+                .mapToInt(cell -> SolverUtil.encodeCellId(cell, width))
+                .toArray();
+
+        PBSolver solver = SolverFactory.newDefault();
+        var presolver = new PBPresolver();
+        var generator = new PBConstraintGeneratorComponent(component);
+        generator.setPresolver(presolver);
+        generator.generate(solver, cells, width, height, mines);
+        presolver.flush(solver);
+        trace.addConstraints(presolver.getConstraintCount());
+        if (timeBudget > 0) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            solver.setTimeoutMs(Math.max(1, remaining));
+        }
+        var enumerator = new ProjectedModelEnumerator(solver, projection);
+        try {
+            enumerator.enumerate(count::addModel);
+        } catch (TimeoutException t) {
+            return Optional.empty();
+        } finally {
+            trace.addSatCalls(enumerator.getSatCalls());
+            // need to make sure that solver will get garbage collected
+            // https://gitlab.ow2.org/sat4j/sat4j/-/issues/55
+            solver.reset();
+        }
+        return Optional.of(count);
     }
 
-    private BigFraction calculateSeaProbability(int seaSize, int remainingMinesInModel) {
-        BigFraction currentModelSeaProb = seaSize > 0 ?
-                new BigFraction(remainingMinesInModel, seaSize) :
-                BigFraction.ZERO;
-        return currentModelSeaProb;
+    private void updateShoreCellProbabilities(Map<Cell, BigFraction> probabilities, ComponentCount count,
+                                              BigInteger[] otherModels, int seaSize, BigInteger totalModels) {
+        // weights[k], the number of ways the rest of the board can be filled
+        // when this component uses k mines
+        BigInteger[] weights = new BigInteger[count.getMaxMines() + 1];
+        for (int k = 0; k < weights.length; k++) {
+            weights[k] = BigInteger.ZERO;
+            for (int t = 0; t < otherModels.length; t++) {
+                BigInteger possibleModels = calculateAllPossibleModels(seaSize, mines - k - t);
+                weights[k] = weights[k].add(otherModels[t].multiply(possibleModels));
+            }
+        }
+
+        List<Cell> componentCells = count.getCells();
+        for (int i = 0; i < componentCells.size(); i++) {
+            BigInteger currentCellMineCount = BigInteger.ZERO;
+            for (int k = 0; k < weights.length; k++) {
+                BigInteger cellMines = count.getCellMines(i, k);
+                if (cellMines.signum() != 0) {
+                    currentCellMineCount = currentCellMineCount.add(weights[k].multiply(cellMines));
+                }
+            }
+            probabilities.put(componentCells.get(i), new BigFraction(currentCellMineCount, totalModels).reduce());
+        }
     }
 
-    private BigInteger calculateAllPossibleModels(int seaSize, int remainingMinesInModel) {
-        BigInteger totalPossibleModels = seaSize > 0 ?
-                BigIntegerMath.binomial(seaSize, remainingMinesInModel) :
-                BigInteger.ONE; // One to include the current model
-        return totalPossibleModels;
+    private void updateSeaCellProbabilities(Map<Cell, BigFraction> probabilities, List<Cell> seaCells,
+                                            BigInteger totalModels, BigInteger totalSeaMines, int seaSize) {
+        BigFraction seaProb = new BigFraction(totalSeaMines, totalModels.multiply(BigInteger.valueOf(seaSize))).reduce();
+        seaCells.forEach(cell -> probabilities.put(cell, seaProb));
     }
 
-    private List<Cell> convertModelToCells(int[] model) {
-        List<Cell> modelShoreMines = Arrays.stream(model)
-                .filter(i -> i >= 0)  // only consider literals that are for cells
-                .mapToObj(id -> SolverUtil.decodeCellId(cells, id, height, width))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .collect(Collectors.toList());
-        return modelShoreMines;
+    /**
+     * @return the number of ways the remaining mines can be put in the sea.
+     */
+    private BigInteger calculateAllPossibleModels(int seaSize, int remainingMines) {
+        return binomials.get(seaSize, remainingMines);
     }
 
-    private void updateAllMineCounts(Map<Cell, BigInteger> cellMineCount, List<Cell> modelShoreMines, BigInteger totalPossibleModels) {
-        // update mine counts
-        for (Cell cell : modelShoreMines) {
-            BigInteger currentCellMineCount = cellMineCount.getOrDefault(cell, BigInteger.ZERO);
-            BigInteger newCellMineCount = currentCellMineCount.add(totalPossibleModels);
-            cellMineCount.put(cell, newCellMineCount);
+    private BigInteger[] toPolynomial(ComponentCount count) {
+        BigInteger[] polynomial = new BigInteger[count.getMaxMines() + 1];
+        for (int k = 0; k < polynomial.length; k++) {
+            polynomial[k] = count.getModels(k);
         }
+        return polynomial;
     }
 
-    private void blockModelInSolver(PBSolver solver, int[] model) {
-        // Remove current solution from possible solutions
-        for (int i = 0; i < model.length; i++) {
-            model[i] *= -1;
-        }
-        IVecInt block = new VecInt(model);
-        try {
-            solver.addBlockingClause(block);
-        } catch (ContradictionException e) {
-            e.printStackTrace();
+    /**
+     * Multiply two polynomials given by their coefficients, used to combine the
+     * mine counts of independent components.
+     */
+    private BigInteger[] multiply(BigInteger[] a, BigInteger[] b) {
+        BigInteger[] product = new BigInteger[a.length + b.length - 1];
+        Arrays.fill(product, BigInteger.ZERO);
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].signum() == 0) {
+                continue;
+            }
+            for (int j = 0; j < b.length; j++) {
+                product[i + j] = product[i + j].add(a[i].multiply(b[j]));
+            }
         }
+        return product;
+    }
+
+    private List<Cell> getSeaCells() {
+        return frontier.map(Frontier::getSeaCells).orElseGet(() -> SolverUtil.getSeaCells(cells));
+    }
+
+    private List<FrontierComponent> getFrontierComponents() {
+        return frontier.map(f -> SolverUtil.getFrontierComponents(cells, f))
+                .orElseGet(() -> SolverUtil.getFrontierComponents(cells));
     }
 }
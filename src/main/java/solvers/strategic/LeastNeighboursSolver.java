@@ -2,7 +2,7 @@ package main.java.solvers.strategic;
 
 import main.java.game.Cell;
 import main.java.game.CellState;
-import main.java.solvers.SolverUtil;
+import main.java.game.NeighbourIndex;
 
 import java.util.List;
 import java.util.Optional;
@@ -14,12 +14,14 @@ public class LeastNeighboursSolver implements IStrategicSolver {
     private final int width;
     private final int height;
     private final int mines;
+    private final NeighbourIndex neighbourIndex;
 
     public LeastNeighboursSolver(Cell[][] cells, int width, int height, int mines) {
         this.cells = cells;
         this.width = width;
         this.height = height;
         this.mines = mines;
+        this.neighbourIndex = NeighbourIndex.of(width, height);
     }
 
     @Override
@@ -37,10 +39,7 @@ public class LeastNeighboursSolver implements IStrategicSolver {
 
         for (int i = 1; i < closedCells.size(); i++) {
             Cell cell = closedCells.get(i);
-            int unknownNeighbours = (int) SolverUtil.getNeighbours(cells, cell.getX(), cell.getY())
-                    .stream()
-                    .filter(c -> c.getState() != CellState.OPEN)
-                    .count();
+            int unknownNeighbours = neighbourIndex.countUnopenedNeighbours(cells, cell.getX(), cell.getY());
             if (unknownNeighbours < leastUnknownNeighbours) {
                 bestStrategicCell = cell;
                 leastUnknownNeighbours = unknownNeighbours;
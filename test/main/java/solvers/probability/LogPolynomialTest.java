@@ -0,0 +1,104 @@
+package main.java.solvers.probability;
+
+import main.java.game.Cell;
+import main.java.solvers.FrontierComponent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogPolynomialTest {
+
+    /**
+     * A component of n closed cells that no number constrains, so it has
+     * C(n, k) models with k mines and C(n - 1, k - 1) of them have any one
+     * cell as a mine. With 1200 cells the counts go far past what a double
+     * holds.
+     */
+    private static ComponentCount unconstrained(int n) {
+        List<Cell> closedCells = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            closedCells.add(new Cell(i, 0));
+        }
+        BigInteger[] binomials = new BigInteger[n + 1];
+        BigInteger[] previous = new BigInteger[n + 1];
+        Arrays.fill(binomials, BigInteger.ZERO);
+        Arrays.fill(previous, BigInteger.ZERO);
+        binomials[0] = BigInteger.ONE;
+        for (int row = 1; row <= n; row++) {
+            System.arraycopy(binomials, 0, previous, 0, n + 1);
+            for (int k = 1; k <= row; k++) {
+                binomials[k] = previous[k].add(previous[k - 1]);
+            }
+        }
+        BigInteger[] cellMine = new BigInteger[n + 1];
+        cellMine[0] = BigInteger.ZERO;
+        System.arraycopy(previous, 0, cellMine, 1, n);
+        BigInteger[][] cellMines = new BigInteger[n][];
+        Arrays.fill(cellMines, cellMine);
+        return new ComponentCount(new FrontierComponent(closedCells, List.of()), binomials, cellMines);
+    }
+
+    private static double logBinomial(int n, int k) {
+        double log = 0;
+        for (int i = 1; i <= k; i++) {
+            log += Math.log(n - k + i) - Math.log(i);
+        }
+        return log;
+    }
+
+    @Test
+    void largeComponentStaysFinite() {
+        int n = 1200;
+        ComponentCount count = unconstrained(n);
+        assertTrue(count.getModels(n / 2).bitLength() > 1024);
+
+        for (int k : new int[]{0, 1, n / 3, n / 2, n - 1, n}) {
+            double expected = logBinomial(n, k);
+            assertEquals(expected, count.getLogModels(k), 1e-9 * Math.max(1, expected));
+        }
+
+        // the polynomial keeps the coefficients within the range of a double
+        // of the largest one
+        LogPolynomial polynomial = LogPolynomial.of(count);
+        for (int k : new int[]{100, n / 3, n / 2, n - 100}) {
+            double expected = logBinomial(n, k);
+            assertEquals(expected, polynomial.getLog(k), 1e-9 * expected);
+        }
+
+        double squared = polynomial.multiply(polynomial).getLog(n);
+        assertTrue(Double.isFinite(squared));
+        assertEquals(logBinomial(2 * n, n), squared, 1e-9 * squared);
+    }
+
+    @Test
+    void largeComponentCellFractions() {
+        int n = 1200;
+        ComponentCount count = unconstrained(n);
+        for (int k : new int[]{0, 1, n / 2, n}) {
+            assertEquals((double) k / n, count.getCellMineFraction(0, k), 1e-12);
+            assertEquals((double) k / n, count.getCellMineFraction(n - 1, k), 1e-12);
+        }
+    }
+
+    @Test
+    void smallCountsAreUnscaled() {
+        long[] models = {1, 3, 3, 1};
+        long[][] cellMines = {{0, 1, 2, 1}, {0, 1, 2, 1}, {0, 1, 2, 1}};
+        List<Cell> closedCells = List.of(new Cell(0, 0), new Cell(1, 0), new Cell(2, 0));
+        ComponentCount count = new ComponentCount(new FrontierComponent(closedCells, List.of()), models, cellMines);
+
+        assertEquals(0, count.getScale());
+        LogPolynomial polynomial = LogPolynomial.of(count);
+        for (int k = 0; k < models.length; k++) {
+            assertEquals(Math.log(models[k]), polynomial.getLog(k), 1e-12);
+            assertEquals(Math.log(models[k]), count.getLogModels(k), 1e-12);
+        }
+        assertEquals(2.0 / 3, count.getCellMineFraction(1, 2), 1e-12);
+    }
+}